@@ -0,0 +1,298 @@
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * This class represents a matrix whose entries are stored outside the Java heap,
+ * in a single block of native memory. A large {@code Matrix} is a graph of row
+ * arrays that the garbage collector has to trace and copy, while the only heap
+ * objects here are small and fixed in size. The native memory is freed as soon
+ * as the matrix is closed, rather than whenever the garbage collector gets to
+ * it, so this class should be used with try-with-resources.
+ * <p>
+ * The memory belongs to an {@code Arena}. By default each matrix creates its own
+ * confined arena, which means it may only be used by the thread that created
+ * it. A matrix can also be placed in an arena supplied by the caller, in which
+ * case the memory is freed when that arena is closed instead. This class uses
+ * the foreign memory API, which is final as of Java 22, so it is built in its
+ * own project that requires Java 22 while the rest of the library still builds
+ * on Java 21.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class OffHeapMatrix implements AutoCloseable {
+
+    // By convention in this class, rows and columns start at 1
+
+    /**
+     * The alignment of the native memory in bytes, which is a cache line
+     */
+    private final static long ALIGNMENT = 64;
+
+    private final static ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE;
+
+    private final Arena arena;
+    private final boolean ownsArena;
+    private final MemorySegment segment;
+    private final int rows;
+    private final int cols;
+
+    // The storage row for each row of the matrix, so interchanging rows is O(1)
+    private final int[] rowOrder;
+
+    private boolean closed;
+
+    /**
+     * Constructs the zero matrix with {@code r} rows and {@code c} columns in its
+     * own confined arena
+     * @param r number of rows
+     * @param c number of columns
+     */
+    public OffHeapMatrix(int r, int c) {
+        this(r, c, Arena.ofConfined(), true);
+    }
+
+    /**
+     * Constructs the zero matrix with {@code r} rows and {@code c} columns in the
+     * given arena. Closing this matrix does not close the arena.
+     * @param r     number of rows
+     * @param c     number of columns
+     * @param arena the arena that owns the native memory
+     */
+    public OffHeapMatrix(int r, int c, Arena arena) {
+        this(r, c, arena, false);
+    }
+
+    private OffHeapMatrix(int r, int c, Arena arena, boolean ownsArena) {
+        assert r >= 1 : r + " rows is not possible";
+        assert c >= 1 : c + " columns is not possible";
+
+        this.arena = arena;
+        this.ownsArena = ownsArena;
+        // Memory from an arena is always zeroed
+        this.segment = arena.allocate((long) r * c * DOUBLE.byteSize(), ALIGNMENT);
+        this.rows = r;
+        this.cols = c;
+        this.rowOrder = new int[r];
+        for (int i = 0; i < r; i++) {
+            this.rowOrder[i] = i;
+        }
+    }
+
+    /**
+     * Constructs an off-heap copy of the given matrix in its own confined arena
+     * @param matrix the matrix to be copied
+     * @return a new {@code OffHeapMatrix} with the same entries as {@code matrix}
+     */
+    public static OffHeapMatrix fromMatrix(Matrix matrix) {
+        OffHeapMatrix output = new OffHeapMatrix(matrix.getRows(), matrix.getCols());
+        try {
+            output.copyFrom(matrix.getMatrix());
+        } catch (Throwable e) {
+            // Nobody else can close the arena, so it has to be freed here
+            output.close();
+            throw e;
+        }
+        return output;
+    }
+
+    /**
+     * Frees the native memory, unless it belongs to an arena supplied by the
+     * caller. The matrix cannot be used afterwards. Closing a matrix that is
+     * already closed has no effect.
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        if (this.ownsArena) {
+            this.arena.close();
+        }
+    }
+
+    /**
+     * Getter for the number of rows
+     * @return the number of rows in this matrix
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Getter for the number of columns
+     * @return the number of columns in this matrix
+     */
+    public int getCols() {
+        return this.cols;
+    }
+
+    /**
+     * Finds the index of the first entry of a row in the native memory
+     * @param row the row, starting at 1
+     * @return the index, in doubles, of the start of that row
+     */
+    private long rowStart(int row) {
+        return (long) this.rowOrder[row - 1] * this.cols;
+    }
+
+    /**
+     * Getter for the element in a particular row and column
+     * @param r the row of the desired element. {@code 1 <= r <= this.getRows()}
+     * @param c the column of the desired element. {@code 1 <= c <= this.getCols()}
+     * @return the element in row {@code r} and column {@code c}
+     */
+    public double getElement(int r, int c) {
+        assert r <= this.rows && r >= 1 : "Row " + r + " not in matrix";
+        assert c <= this.cols && c >= 1 : "Column " + c + " not in matrix";
+        return this.segment.getAtIndex(DOUBLE, this.rowStart(r) + c - 1);
+    }
+
+    /**
+     * Setter for a single element
+     * @param r     the row of the element to be set
+     * @param c     the column of the element to be set
+     * @param value the new value to be set in row {@code r} and column {@code c}
+     */
+    public void setElement(int r, int c, double value) {
+        assert r >= 1 && r <= this.rows : "Row " + r + " not in matrix";
+        assert c >= 1 && c <= this.cols : "Column " + c + " not in matrix";
+        this.segment.setAtIndex(DOUBLE, this.rowStart(r) + c - 1, value);
+    }
+
+    /**
+     * Scales {@code row} by {@code factor}
+     * @param row    the row to be scaled
+     * @param factor the factor to be scaled by
+     */
+    public void scaleRow(int row, double factor) {
+        assert row <= this.rows && row >= 1 : "Row " + row + " not in matrix";
+        assert factor != 0 : "Do not scale by zero";
+
+        long start = this.rowStart(row);
+        for (long i = start; i < start + this.cols; i++) {
+            this.segment.setAtIndex(DOUBLE, i, this.segment.getAtIndex(DOUBLE, i) * factor);
+        }
+    }
+
+    /**
+     * Exchanges {@code rowOne} with {@code rowTwo}. Only the row order changes,
+     * no entries are moved.
+     * @param rowOne first row to be interchanged
+     * @param rowTwo second row to be interchanged
+     */
+    public void interchangeRows(int rowOne, int rowTwo) {
+        assert rowOne <= this.rows && rowOne >= 1 : "Row " + rowOne + " not in matrix";
+        assert rowTwo <= this.rows && rowTwo >= 1 : "Row " + rowTwo + " not in matrix";
+
+        int temp = this.rowOrder[rowOne - 1];
+        this.rowOrder[rowOne - 1] = this.rowOrder[rowTwo - 1];
+        this.rowOrder[rowTwo - 1] = temp;
+    }
+
+    /**
+     * Scales {@code rowOne} by {@code factor} and adds it to {@code rowTwo}
+     * @param rowOne the row to be scaled
+     * @param rowTwo the row being modified
+     * @param factor the scale factor for {@code rowOne}
+     */
+    public void addRows(int rowOne, int rowTwo, double factor) {
+        assert rowOne <= this.rows && rowOne >= 1 : "Row " + rowOne + " not in matrix";
+        assert rowTwo <= this.rows && rowTwo >= 1 : "Row " + rowTwo + " not in matrix";
+
+        long source = this.rowStart(rowOne);
+        long dest = this.rowStart(rowTwo);
+        for (int i = 0; i < this.cols; i++) {
+            double sum = this.segment.getAtIndex(DOUBLE, dest + i)
+                    + this.segment.getAtIndex(DOUBLE, source + i) * factor;
+            this.segment.setAtIndex(DOUBLE, dest + i, sum);
+        }
+    }
+
+    /**
+     * Checks if a row contains only zeros
+     * @param row the row to be checked
+     * @return whether the row is all zeros
+     */
+    public boolean isAllZeros(int row) {
+        assert row <= this.rows && row >= 1 : "Row " + row + " not in matrix";
+
+        long start = this.rowStart(row);
+        for (long i = start; i < start + this.cols; i++) {
+            if (this.segment.getAtIndex(DOUBLE, i) != 0.0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies a single row into a heap array
+     * @param row  the row to be copied
+     * @param dest an array with at least {@code this.getCols()} entries
+     */
+    public void copyRowTo(int row, double[] dest) {
+        assert row <= this.rows && row >= 1 : "Row " + row + " not in matrix";
+        assert dest.length >= this.cols : "Destination is too short for a row";
+
+        MemorySegment.copy(this.segment, DOUBLE, this.rowStart(row) * DOUBLE.byteSize(), dest, 0, this.cols);
+    }
+
+    /**
+     * Copies a heap array into a single row
+     * @param row    the row to be overwritten
+     * @param source an array with at least {@code this.getCols()} entries
+     */
+    public void copyRowFrom(int row, double[] source) {
+        assert row <= this.rows && row >= 1 : "Row " + row + " not in matrix";
+        assert source.length >= this.cols : "Source is too short for a row";
+
+        MemorySegment.copy(source, 0, this.segment, DOUBLE, this.rowStart(row) * DOUBLE.byteSize(), this.cols);
+    }
+
+    /**
+     * Overwrites every entry of this matrix from a 2D array
+     * @param matrix a 2D array with the same dimensions as this matrix
+     */
+    public void copyFrom(double[][] matrix) {
+        assert matrix.length == this.rows : "Array must have " + this.rows + " rows";
+
+        for (int r = 1; r <= this.rows; r++) {
+            this.copyRowFrom(r, matrix[r - 1]);
+        }
+    }
+
+    /**
+     * Copies every entry of this matrix into a 2D array
+     * @param matrix a 2D array with the same dimensions as this matrix
+     */
+    public void copyTo(double[][] matrix) {
+        assert matrix.length == this.rows : "Array must have " + this.rows + " rows";
+
+        for (int r = 1; r <= this.rows; r++) {
+            this.copyRowTo(r, matrix[r - 1]);
+        }
+    }
+
+    /**
+     * Copies this matrix back onto the heap
+     * @return a new {@code Matrix} with the same entries as this one. Note that
+     *         this method will return a {@code SquareMatrix} if rows = columns
+     */
+    public Matrix toMatrix() {
+        double[][] output = new double[this.rows][this.cols];
+        this.copyTo(output);
+        return this.rows == this.cols ? new SquareMatrix(output) : new Matrix(output);
+    }
+
+    /**
+     * Create a string representation of this matrix
+     * @return a string representation of this matrix
+     */
+    @Override
+    public String toString() {
+        return this.toMatrix().toString();
+    }
+
+}
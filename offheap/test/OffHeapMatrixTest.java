@@ -0,0 +1,145 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.foreign.Arena;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@code OffHeapMatrix} against the same operations on a heap array, and
+ * checks that its native memory can no longer be reached once it is freed.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class OffHeapMatrixTest {
+
+    private final Random random = new Random(11);
+
+    @Test
+    public void startsAtZeroAndKeepsElements() {
+        try (OffHeapMatrix mat = new OffHeapMatrix(3, 4)) {
+            assertEquals(3, mat.getRows());
+            assertEquals(4, mat.getCols());
+            for (int r = 1; r <= 3; r++) {
+                assertTrue(mat.isAllZeros(r));
+            }
+
+            double[][] expected = this.randomArray(3, 4);
+            for (int r = 1; r <= 3; r++) {
+                for (int c = 1; c <= 4; c++) {
+                    mat.setElement(r, c, expected[r - 1][c - 1]);
+                }
+            }
+            for (int r = 1; r <= 3; r++) {
+                for (int c = 1; c <= 4; c++) {
+                    assertEquals(expected[r - 1][c - 1], mat.getElement(r, c));
+                }
+                assertFalse(mat.isAllZeros(r));
+            }
+        }
+    }
+
+    @Test
+    public void rowOperationsMatchHeapMatrix() {
+        double[][] arr = this.randomArray(5, 3);
+        Matrix expected = new Matrix(arr);
+        try (OffHeapMatrix mat = OffHeapMatrix.fromMatrix(new Matrix(copy(arr)))) {
+            // Row interchanges only reorder rowOrder, so later operations must
+            // follow the rows to where they were moved
+            expected.interchangeRows(1, 4);
+            mat.interchangeRows(1, 4);
+            expected.interchangeRows(4, 2);
+            mat.interchangeRows(4, 2);
+            expected.addRows(1, 2, -0.5);
+            mat.addRows(1, 2, -0.5);
+            expected.scaleRow(4, 3);
+            mat.scaleRow(4, 3);
+
+            double[] row = new double[3];
+            for (int r = 1; r <= 5; r++) {
+                mat.copyRowTo(r, row);
+                assertArrayEquals(expected.getRow(r), row);
+            }
+            assertEquals(expected, mat.toMatrix());
+
+            // Writing a row lands in the row now at that position
+            mat.copyRowFrom(1, new double[] { 7, 8, 9 });
+            assertEquals(8, mat.getElement(1, 2));
+            assertArrayEquals(expected.getRow(2), rowOf(mat, 2));
+        }
+    }
+
+    @Test
+    public void copiesRoundTrip() {
+        int[][] shapes = { { 1, 1 }, { 4, 4 }, { 2, 7 }, { 7, 2 } };
+        for (int[] shape : shapes) {
+            double[][] arr = this.randomArray(shape[0], shape[1]);
+            Matrix source = shape[0] == shape[1] ? new SquareMatrix(copy(arr)) : new Matrix(copy(arr));
+            try (OffHeapMatrix mat = OffHeapMatrix.fromMatrix(source)) {
+                Matrix back = mat.toMatrix();
+                assertEquals(shape[0] == shape[1], back instanceof SquareMatrix);
+                for (int r = 0; r < shape[0]; r++) {
+                    assertArrayEquals(arr[r], back.getRow(r + 1));
+                }
+
+                double[][] other = this.randomArray(shape[0], shape[1]);
+                mat.copyFrom(other);
+                double[][] dest = new double[shape[0]][shape[1]];
+                mat.copyTo(dest);
+                for (int r = 0; r < shape[0]; r++) {
+                    assertArrayEquals(other[r], dest[r]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unusableAfterClose() {
+        OffHeapMatrix owned = new OffHeapMatrix(2, 2);
+        owned.setElement(1, 1, 5);
+        owned.close();
+        assertThrows(IllegalStateException.class, () -> owned.getElement(1, 1));
+        assertThrows(IllegalStateException.class, () -> owned.setElement(1, 1, 2));
+        // Closing again has no effect
+        owned.close();
+
+        // A matrix in a supplied arena lives as long as the arena
+        Arena arena = Arena.ofConfined();
+        OffHeapMatrix shared = new OffHeapMatrix(2, 2, arena);
+        shared.close();
+        shared.setElement(2, 2, 3);
+        assertEquals(3, shared.getElement(2, 2));
+        arena.close();
+        assertThrows(IllegalStateException.class, () -> shared.getElement(2, 2));
+        shared.close();
+    }
+
+    private static double[] rowOf(OffHeapMatrix mat, int r) {
+        double[] row = new double[mat.getCols()];
+        mat.copyRowTo(r, row);
+        return row;
+    }
+
+    private double[][] randomArray(int rows, int cols) {
+        double[][] arr = new double[rows][cols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                arr[r][c] = this.random.nextGaussian();
+            }
+        }
+        return arr;
+    }
+
+    private static double[][] copy(double[][] arr) {
+        double[][] output = new double[arr.length][];
+        for (int r = 0; r < arr.length; r++) {
+            output[r] = arr[r].clone();
+        }
+        return output;
+    }
+
+}
@@ -0,0 +1,328 @@
+/**
+ * This class represents a square matrix whose nonzero entries all lie within a
+ * band around the diagonal: {@code p} diagonals below it and {@code q} above.
+ * Only the n(p + q + 1) entries of the band are stored. Systems are solved with
+ * an LU factorization with partial pivoting that stays inside a band of width
+ * 2p + q + 1, so it costs O(n p (p + q)) time instead of O(n^3). The
+ * factorization is kept until the matrix is changed, so solving again with the
+ * same matrix only costs O(n (2p + q)).
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class BandedMatrix extends StructuredMatrix {
+
+    // Entry (r, c) is at (r - 1) * width + (c - r + lower), rows and columns
+    // starting at 1
+    private final double[] band;
+    private final int lower;
+    private final int upper;
+    private final int width;
+
+    // The LU factors, with U allowed q + p diagonals above the diagonal to hold
+    // the fill from row interchanges. Null until the first solve
+    private double[] factors;
+    private int[] pivots;
+    private int permutationSign;
+    private boolean singular;
+
+    /**
+     * Constructs the zero matrix with the given bandwidths
+     * @param n     the number of rows and columns
+     * @param lower the number of diagonals below the main diagonal that may be
+     *              nonzero
+     * @param upper the number of diagonals above the main diagonal that may be
+     *              nonzero
+     */
+    public BandedMatrix(int n, int lower, int upper) {
+        super(n);
+        assert lower >= 0 && upper >= 0 : "Bandwidths cannot be negative";
+
+        this.lower = Math.min(lower, n - 1);
+        this.upper = Math.min(upper, n - 1);
+        this.width = this.lower + this.upper + 1;
+        this.band = new double[n * this.width];
+    }
+
+    /**
+     * Constructs a banded copy of the given matrix
+     * @param m     the matrix to be copied
+     * @param lower the number of diagonals below the main diagonal that may be
+     *              nonzero
+     * @param upper the number of diagonals above the main diagonal that may be
+     *              nonzero
+     * @throws MatrixException if {@code m} has a nonzero entry outside the band
+     */
+    public BandedMatrix(SquareMatrix m, int lower, int upper) throws MatrixException {
+        this(m.getN(), lower, upper);
+        for (int r = 1; r <= m.getN(); r++) {
+            double[] row = m.getRow(r);
+            for (int c = 1; c <= row.length; c++) {
+                if (c >= r - this.lower && c <= r + this.upper) {
+                    this.band[(r - 1) * this.width + c - r + this.lower] = row[c - 1];
+                } else if (row[c - 1] != 0) {
+                    throw outsideStructure(this.getClass(), r, c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructs a matrix from its diagonals, for subclasses with a fixed band
+     * @param lower     the number of diagonals below the main diagonal
+     * @param diagonals every diagonal of the band from the lowest to the
+     *                  highest, each from the top left. The main diagonal has n
+     *                  entries and the one k away from it has n - k
+     */
+    protected BandedMatrix(int lower, double[]... diagonals) {
+        this(diagonals[lower].length, lower, diagonals.length - lower - 1);
+        int n = diagonals[lower].length;
+        for (int k = 0; k < diagonals.length; k++) {
+            int offset = k - lower; // c - r along this diagonal
+            assert diagonals[k].length == n - Math.abs(offset) : "Diagonal " + offset + " must have "
+                    + (n - Math.abs(offset)) + " entries";
+            // The stored bandwidths are clamped to n - 1, so the slot comes from
+            // the offset rather than from k
+            for (int i = 0; i < diagonals[k].length; i++) {
+                int r = offset < 0 ? i - offset : i; // starting at 0
+                this.band[r * this.width + offset + this.lower] = diagonals[k][i];
+            }
+        }
+    }
+
+    /**
+     * Constructs a matrix of the most specific banded type for the given
+     * bandwidths
+     * @param n     the number of rows and columns
+     * @param lower the number of diagonals below the main diagonal
+     * @param upper the number of diagonals above the main diagonal
+     * @return a {@code DiagonalMatrix}, {@code TridiagonalMatrix} or
+     *         {@code BandedMatrix} of zeros
+     */
+    public static BandedMatrix create(int n, int lower, int upper) {
+        lower = Math.min(lower, n - 1);
+        upper = Math.min(upper, n - 1);
+        if (lower == 0 && upper == 0) {
+            return new DiagonalMatrix(n);
+        } else if (lower == 1 && upper == 1) {
+            return new TridiagonalMatrix(n);
+        } else {
+            return new BandedMatrix(n, lower, upper);
+        }
+    }
+
+    /**
+     * Getter for the lower bandwidth
+     * @return the number of diagonals below the main diagonal that may be nonzero
+     */
+    @Override
+    public int getLowerBandwidth() {
+        return this.lower;
+    }
+
+    /**
+     * Getter for the upper bandwidth
+     * @return the number of diagonals above the main diagonal that may be nonzero
+     */
+    @Override
+    public int getUpperBandwidth() {
+        return this.upper;
+    }
+
+    @Override
+    public int getFirstColumn(int r) {
+        return Math.max(1, r - this.lower);
+    }
+
+    @Override
+    public int getLastColumn(int r) {
+        return Math.min(this.getN(), r + this.upper);
+    }
+
+    @Override
+    public double getElement(int r, int c) {
+        this.checkIndices(r, c);
+        if (c < r - this.lower || c > r + this.upper) {
+            return 0;
+        }
+        return this.band[(r - 1) * this.width + c - r + this.lower];
+    }
+
+    @Override
+    public void setElement(int r, int c, double value) {
+        this.checkIndices(r, c);
+        if (c < r - this.lower || c > r + this.upper) {
+            if (value != 0) {
+                throw outsideStructure(this.getClass(), r, c);
+            }
+            return;
+        }
+        this.band[(r - 1) * this.width + c - r + this.lower] = value;
+        this.factors = null;
+    }
+
+    /**
+     * Factors this matrix if it has changed since it was last factored. Row k of
+     * the factors holds columns k - p to k + p + q, where L is stored left of the
+     * diagonal and U on and right of it. As in LINPACK, the multipliers are not
+     * moved by later interchanges, so the interchanges have to be replayed in
+     * the same order when solving.
+     */
+    private void factor() {
+        if (this.factors != null) {
+            return;
+        }
+
+        int n = this.getN();
+        int p = this.lower;
+        int factorWidth = 2 * p + this.upper + 1;
+        double[] lu = new double[n * factorWidth];
+        for (int r = 0; r < n; r++) {
+            System.arraycopy(this.band, r * this.width, lu, r * factorWidth, this.width);
+        }
+        int[] pivotRows = new int[n];
+        int sign = 1;
+        boolean isSingular = false;
+        double tolerance = this.getPivotTolerance();
+
+        for (int k = 0; k < n; k++) {
+            int lastRow = Math.min(n - 1, k + p);
+            int lastCol = Math.min(n - 1, k + p + this.upper);
+
+            // Entry (r, c), starting at 0, is at r * factorWidth + c - r + p
+            int pivotRow = k;
+            for (int r = k + 1; r <= lastRow; r++) {
+                if (Math.abs(lu[r * factorWidth + k - r + p]) > Math.abs(lu[pivotRow * factorWidth + k - pivotRow + p])) {
+                    pivotRow = r;
+                }
+            }
+            pivotRows[k] = pivotRow;
+            if (pivotRow != k) {
+                for (int c = k; c <= lastCol; c++) {
+                    int one = k * factorWidth + c - k + p;
+                    int two = pivotRow * factorWidth + c - pivotRow + p;
+                    double temp = lu[one];
+                    lu[one] = lu[two];
+                    lu[two] = temp;
+                }
+                sign = -sign;
+            }
+
+            // As in LUDecomposition, a negligible pivot makes the matrix singular,
+            // but only an exact zero stops the elimination of its column
+            double pivot = lu[k * factorWidth + p];
+            if (Math.abs(pivot) <= tolerance) {
+                isSingular = true;
+            }
+            if (pivot == 0.0) {
+                continue;
+            }
+            for (int r = k + 1; r <= lastRow; r++) {
+                int rowStart = r * factorWidth - r + p;
+                double factor = lu[rowStart + k] / pivot;
+                lu[rowStart + k] = factor;
+                if (factor == 0.0) {
+                    continue;
+                }
+                int pivotStart = k * factorWidth - k + p;
+                for (int c = k + 1; c <= lastCol; c++) {
+                    lu[rowStart + c] -= factor * lu[pivotStart + c];
+                }
+            }
+        }
+
+        this.pivots = pivotRows;
+        this.permutationSign = sign;
+        this.singular = isSingular;
+        this.factors = lu;
+    }
+
+    /**
+     * Checks whether a pivot was negligible next to the largest entry of this
+     * matrix while factoring it, as in {@code LUDecomposition}
+     * @return whether this matrix is singular
+     */
+    public boolean isSingular() {
+        this.factor();
+        return this.singular;
+    }
+
+    @Override
+    public double[] solve(double[] b) throws MatrixException {
+        assert b.length == this.getN() : "Right hand side must have " + this.getN() + " entries";
+        this.factor();
+        int n = this.getN();
+        int p = this.lower;
+        int factorWidth = 2 * p + this.upper + 1;
+        if (this.singular) {
+            double smallest = this.factors[p];
+            for (int k = 1; k < n; k++) {
+                double pivot = this.factors[k * factorWidth + p];
+                if (Math.abs(pivot) < Math.abs(smallest)) {
+                    smallest = pivot;
+                }
+            }
+            throw this.notInvertible(smallest);
+        }
+
+        double[] x = b.clone();
+
+        // Replay the interchanges while forward substituting with L
+        for (int k = 0; k < n; k++) {
+            int pivotRow = this.pivots[k];
+            if (pivotRow != k) {
+                double temp = x[k];
+                x[k] = x[pivotRow];
+                x[pivotRow] = temp;
+            }
+            double value = x[k];
+            if (value != 0.0) {
+                for (int r = k + 1; r <= Math.min(n - 1, k + p); r++) {
+                    x[r] -= this.factors[r * factorWidth + k - r + p] * value;
+                }
+            }
+        }
+        // Back substitution with U
+        for (int r = n - 1; r >= 0; r--) {
+            int rowStart = r * factorWidth - r + p;
+            double sum = x[r];
+            for (int c = r + 1; c <= Math.min(n - 1, r + p + this.upper); c++) {
+                sum -= this.factors[rowStart + c] * x[c];
+            }
+            x[r] = sum / this.factors[rowStart + r];
+        }
+        return x;
+    }
+
+    /**
+     * Calculates the determinant from the pivots of the banded factorization
+     * @return the determinant of this matrix
+     */
+    @Override
+    public double getDeterminant() {
+        this.factor();
+        int factorWidth = 2 * this.lower + this.upper + 1;
+        double det = this.permutationSign;
+        for (int k = 0; k < this.getN(); k++) {
+            det *= this.factors[k * factorWidth + this.lower];
+        }
+        return det;
+    }
+
+    @Override
+    public BandedMatrix clone() {
+        BandedMatrix output = new BandedMatrix(this.getN(), this.lower, this.upper);
+        this.copyInto(output);
+        return output;
+    }
+
+    /**
+     * Copies the band of this matrix into another with the same bandwidths
+     * @param output the matrix to overwrite
+     */
+    protected void copyInto(BandedMatrix output) {
+        assert output.lower == this.lower && output.upper == this.upper : "Bandwidths must match";
+
+        System.arraycopy(this.band, 0, output.band, 0, this.band.length);
+    }
+
+}
@@ -0,0 +1,436 @@
+import java.util.Arrays;
+
+/**
+ * This class computes the LU factorizations with partial pivoting of many
+ * {@code SquareMatrix}es of the same dimension at once. Factoring a small
+ * matrix on its own is dominated by loop overhead, since each inner loop only
+ * runs a handful of times. Here the matrices are interleaved so that entry
+ * (i, j) of every matrix sits next to entry (i, j) of the others, and each
+ * step of the elimination is applied to the whole batch in one inner loop that
+ * the JIT can vectorize. The result is the same as factoring each matrix with
+ * {@code LUDecomposition}.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class BatchedLUDecomposition {
+
+    // Entry (i, j) of matrix b is at (i * n + j) * size + b
+    private final double[] lu;
+    // The original row of row i of matrix b is at i * size + b
+    private final int[] permutation;
+    private final int[] permutationSign;
+    private final boolean[] singular;
+    private final double[] tolerances;
+    private final double[] norms;
+    // Estimated for the whole batch the first time one is needed
+    private double[] conditionNumbers;
+    private final int n;
+    private final int size;
+
+    /**
+     * Factors the given matrices without modifying them
+     * @param mats at least one {@code SquareMatrix}, all of the same dimension
+     */
+    public BatchedLUDecomposition(SquareMatrix[] mats) {
+        assert mats.length >= 1 : "Must factor at least one matrix";
+
+        this.n = mats[0].getN();
+        this.size = mats.length;
+        this.lu = new double[this.n * this.n * this.size];
+        this.permutation = new int[this.n * this.size];
+        this.permutationSign = new int[this.size];
+        this.singular = new boolean[this.size];
+        this.tolerances = new double[this.size];
+        this.norms = new double[this.size];
+
+        double[] columnSums = new double[this.n];
+        for (int b = 0; b < this.size; b++) {
+            assert mats[b].getN() == this.n : "All matrices must have dimension " + this.n;
+
+            double maxEntry = 0;
+            Arrays.fill(columnSums, 0);
+            for (int i = 0; i < this.n; i++) {
+                double[] row = mats[b].getRow(i + 1);
+                for (int j = 0; j < this.n; j++) {
+                    this.lu[(i * this.n + j) * this.size + b] = row[j];
+                    maxEntry = Math.max(maxEntry, Math.abs(row[j]));
+                    columnSums[j] += Math.abs(row[j]);
+                }
+                this.permutation[i * this.size + b] = i;
+            }
+            for (double sum : columnSums) {
+                this.norms[b] = Math.max(this.norms[b], sum);
+            }
+            this.permutationSign[b] = 1;
+            this.tolerances[b] = LUDecomposition.pivotTolerance(this.n, maxEntry);
+        }
+        this.factor();
+    }
+
+    /**
+     * Performs the elimination on every matrix at once. Pivots are chosen for
+     * each matrix separately, but the row operations are applied to all of them
+     * in the same loop.
+     */
+    private void factor() {
+        double[] factors = new double[this.size];
+
+        for (int k = 0; k < this.n; k++) {
+            for (int b = 0; b < this.size; b++) {
+                this.pivot(k, b);
+            }
+
+            int pivotStart = (k * this.n + k) * this.size;
+            for (int r = k + 1; r < this.n; r++) {
+                int start = (r * this.n + k) * this.size;
+                for (int b = 0; b < this.size; b++) {
+                    double pivot = this.lu[pivotStart + b];
+                    // A singular matrix skips this column, as in LUDecomposition
+                    double factor = pivot == 0.0 ? 0.0 : this.lu[start + b] / pivot;
+                    this.lu[start + b] = factor;
+                    factors[b] = factor;
+                }
+                for (int c = k + 1; c < this.n; c++) {
+                    int dest = (r * this.n + c) * this.size;
+                    int source = (k * this.n + c) * this.size;
+                    for (int b = 0; b < this.size; b++) {
+                        this.lu[dest + b] -= factors[b] * this.lu[source + b];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the largest entry in column {@code k} of one matrix, on or below the
+     * diagonal, into row {@code k}
+     * @param k the column being eliminated, starting at 0
+     * @param b the index of the matrix in the batch
+     */
+    private void pivot(int k, int b) {
+        int pivotRow = k;
+        double largest = Math.abs(this.lu[(k * this.n + k) * this.size + b]);
+        for (int r = k + 1; r < this.n; r++) {
+            double value = Math.abs(this.lu[(r * this.n + k) * this.size + b]);
+            if (value > largest) {
+                largest = value;
+                pivotRow = r;
+            }
+        }
+
+        if (pivotRow != k) {
+            for (int j = 0; j < this.n; j++) {
+                int one = (k * this.n + j) * this.size + b;
+                int two = (pivotRow * this.n + j) * this.size + b;
+                double temp = this.lu[one];
+                this.lu[one] = this.lu[two];
+                this.lu[two] = temp;
+            }
+            int tempIndex = this.permutation[k * this.size + b];
+            this.permutation[k * this.size + b] = this.permutation[pivotRow * this.size + b];
+            this.permutation[pivotRow * this.size + b] = tempIndex;
+            this.permutationSign[b] = -this.permutationSign[b];
+        }
+        if (largest <= this.tolerances[b]) {
+            this.singular[b] = true;
+        }
+    }
+
+    /**
+     * Gets the dimension of the factored matrices
+     * @return the number of rows and columns of each matrix
+     */
+    public int getN() {
+        return this.n;
+    }
+
+    /**
+     * Gets the number of factored matrices
+     * @return the number of matrices in the batch
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Checks whether a pivot was negligible next to the largest entry of one
+     * matrix, as in {@code LUDecomposition}
+     * @param index the index of the matrix in the batch, starting at 0
+     * @return whether that matrix is singular
+     */
+    public boolean isSingular(int index) {
+        return this.singular[index];
+    }
+
+    /**
+     * Estimates the condition number of one matrix in the 1-norm, exactly as
+     * {@code LUDecomposition.estimateConditionNumber} does for the same matrix
+     * @param index the index of the matrix in the batch, starting at 0
+     * @return the estimated condition number, which is infinite if a pivot was
+     *         exactly zero
+     */
+    public double estimateConditionNumber(int index) {
+        if (this.conditionNumbers == null) {
+            this.estimateConditionNumbers();
+        }
+        return this.conditionNumbers[index];
+    }
+
+    /**
+     * Estimates ||A^-1|| for every matrix at once with the same steps as
+     * {@code LUDecomposition}, so the estimates are identical. Each step solves
+     * for the whole batch in one loop, like {@link #getInverses()}. A matrix whose
+     * search has stopped is solved along with the rest until every search has,
+     * and its results are ignored.
+     */
+    private void estimateConditionNumbers() {
+        int n = this.n;
+        double[] estimates = new double[this.size];
+        int[] previousIndices = new int[this.size];
+        boolean[] active = new boolean[this.size];
+        Arrays.fill(previousIndices, -1);
+        Arrays.fill(active, true);
+        int remaining = this.size;
+
+        // Entry i of the vector for matrix b is at i * size + b
+        double[] x = new double[n * this.size];
+        double[] signs = new double[n * this.size];
+        Arrays.fill(x, 1.0 / n);
+
+        for (int iteration = 1; iteration <= LUDecomposition.MAX_ESTIMATE_ITERATIONS && remaining > 0; iteration++) {
+            double[] y = this.solve(x);
+            for (int b = 0; b < this.size; b++) {
+                if (!active[b]) {
+                    continue;
+                }
+                double yNorm = 0;
+                for (int i = 0; i < n; i++) {
+                    yNorm += Math.abs(y[i * this.size + b]);
+                }
+                if (iteration > 1 && yNorm <= estimates[b]) {
+                    active[b] = false;
+                    remaining--;
+                    continue;
+                }
+                estimates[b] = yNorm;
+            }
+
+            // z is the gradient of ||A^-1 x|| at x
+            for (int i = 0; i < signs.length; i++) {
+                signs[i] = y[i] >= 0 ? 1 : -1;
+            }
+            double[] z = this.solveTranspose(signs);
+            for (int b = 0; b < this.size; b++) {
+                if (!active[b]) {
+                    continue;
+                }
+                int index = 0;
+                double zx = 0;
+                for (int i = 0; i < n; i++) {
+                    if (Math.abs(z[i * this.size + b]) > Math.abs(z[index * this.size + b])) {
+                        index = i;
+                    }
+                    zx += z[i * this.size + b] * x[i * this.size + b];
+                }
+                // Stop at a local maximum, where no unit vector improves the estimate
+                if (index == previousIndices[b] || Math.abs(z[index * this.size + b]) <= zx) {
+                    active[b] = false;
+                    remaining--;
+                    continue;
+                }
+                for (int i = 0; i < n; i++) {
+                    x[i * this.size + b] = i == index ? 1 : 0;
+                }
+                previousIndices[b] = index;
+            }
+        }
+
+        // Higham's extra vector, with alternating signs and growing entries
+        if (n > 1) {
+            for (int i = 0; i < n; i++) {
+                double value = (i % 2 == 0 ? 1 : -1) * (1 + (double) i / (n - 1));
+                Arrays.fill(x, i * this.size, (i + 1) * this.size, value);
+            }
+            double[] y = this.solve(x);
+            for (int b = 0; b < this.size; b++) {
+                double yNorm = 0;
+                for (int i = 0; i < n; i++) {
+                    yNorm += Math.abs(y[i * this.size + b]);
+                }
+                estimates[b] = Math.max(estimates[b], 2 * yNorm / (3 * n));
+            }
+        }
+
+        this.conditionNumbers = new double[this.size];
+        for (int b = 0; b < this.size; b++) {
+            boolean zeroPivot = false;
+            for (int k = 0; k < n; k++) {
+                zeroPivot |= this.lu[(k * n + k) * this.size + b] == 0.0;
+            }
+            this.conditionNumbers[b] = zeroPivot ? Double.POSITIVE_INFINITY : this.norms[b] * estimates[b];
+        }
+    }
+
+    /**
+     * Solves Ax = b for every matrix at once, without checking for singularity
+     * @param b the right hand sides, interleaved like the factors, which are not
+     *          modified
+     * @return the solutions, interleaved the same way
+     */
+    private double[] solve(double[] b) {
+        double[] x = new double[b.length];
+        for (int i = 0; i < this.n; i++) {
+            for (int k = 0; k < this.size; k++) {
+                x[i * this.size + k] = b[this.permutation[i * this.size + k] * this.size + k];
+            }
+        }
+        this.solveInPlace(x);
+        return x;
+    }
+
+    /**
+     * Solves LUx = y for every matrix at once, where {@code x} already holds the
+     * permuted right hand sides
+     * @param x the permuted right hand sides, overwritten by the solutions
+     */
+    private void solveInPlace(double[] x) {
+        // Forward substitution with the unit lower triangles
+        for (int i = 0; i < this.n; i++) {
+            for (int j = 0; j < i; j++) {
+                int start = (i * this.n + j) * this.size;
+                for (int b = 0; b < this.size; b++) {
+                    x[i * this.size + b] -= this.lu[start + b] * x[j * this.size + b];
+                }
+            }
+        }
+        // Back substitution with the upper triangles
+        for (int i = this.n - 1; i >= 0; i--) {
+            for (int j = i + 1; j < this.n; j++) {
+                int start = (i * this.n + j) * this.size;
+                for (int b = 0; b < this.size; b++) {
+                    x[i * this.size + b] -= this.lu[start + b] * x[j * this.size + b];
+                }
+            }
+            int diagonal = (i * this.n + i) * this.size;
+            for (int b = 0; b < this.size; b++) {
+                x[i * this.size + b] /= this.lu[diagonal + b];
+            }
+        }
+    }
+
+    /**
+     * Solves A^T x = b for every matrix at once, without checking for
+     * singularity. Since PA = LU, this is U^T L^T P x = b.
+     * @param b the right hand sides, interleaved like the factors, which are not
+     *          modified
+     * @return the solutions, interleaved the same way
+     */
+    private double[] solveTranspose(double[] b) {
+        double[] y = b.clone();
+        // Forward substitution with U^T, which is lower triangular
+        for (int i = 0; i < this.n; i++) {
+            for (int j = 0; j < i; j++) {
+                int start = (j * this.n + i) * this.size;
+                for (int k = 0; k < this.size; k++) {
+                    y[i * this.size + k] -= this.lu[start + k] * y[j * this.size + k];
+                }
+            }
+            int diagonal = (i * this.n + i) * this.size;
+            for (int k = 0; k < this.size; k++) {
+                y[i * this.size + k] /= this.lu[diagonal + k];
+            }
+        }
+        // Back substitution with L^T, which is unit upper triangular
+        for (int i = this.n - 1; i >= 0; i--) {
+            for (int j = i + 1; j < this.n; j++) {
+                int start = (j * this.n + i) * this.size;
+                for (int k = 0; k < this.size; k++) {
+                    y[i * this.size + k] -= this.lu[start + k] * y[j * this.size + k];
+                }
+            }
+        }
+        // Undo the permutations
+        double[] x = new double[b.length];
+        for (int i = 0; i < this.n; i++) {
+            for (int k = 0; k < this.size; k++) {
+                x[this.permutation[i * this.size + k] * this.size + k] = y[i * this.size + k];
+            }
+        }
+        return x;
+    }
+
+    /**
+     * Checks whether one matrix can be inverted, by the same test as
+     * {@code LUDecomposition.getInverse}
+     * @param index the index of the matrix in the batch, starting at 0
+     * @return whether the matrix is singular or so badly conditioned that no
+     *         digit of its inverse would be correct
+     */
+    public boolean isInvertible(int index) {
+        return !this.singular[index] && !LUDecomposition.isTooIllConditioned(this.estimateConditionNumber(index));
+    }
+
+    /**
+     * Calculates the determinant of every matrix from the product of its pivots
+     * @return the determinants, in the order the matrices were given
+     */
+    public double[] getDeterminants() {
+        double[] output = new double[this.size];
+        for (int b = 0; b < this.size; b++) {
+            output[b] = this.permutationSign[b];
+        }
+        for (int i = 0; i < this.n; i++) {
+            int start = (i * this.n + i) * this.size;
+            for (int b = 0; b < this.size; b++) {
+                output[b] *= this.lu[start + b];
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Constructs the inverse of every matrix, solving for one column of all the
+     * inverses at a time
+     * @return the inverses, in the order the matrices were given. The entry for a
+     *         matrix that is not invertible by {@link #isInvertible(int)} is
+     *         null, where {@code LUDecomposition.getInverse} would throw;
+     *         {@link #estimateConditionNumber(int)} gives its condition number.
+     */
+    public SquareMatrix[] getInverses() {
+        double[][][] inverses = new double[this.size][][];
+        for (int b = 0; b < this.size; b++) {
+            if (this.isInvertible(b)) {
+                inverses[b] = new double[this.n][this.n];
+            }
+        }
+
+        // Row i of the current column of matrix b is at i * size + b. Matrices
+        // that are not invertible are solved along with the rest, their results
+        // are discarded
+        double[] x = new double[this.n * this.size];
+        for (int c = 0; c < this.n; c++) {
+            for (int i = 0; i < x.length; i++) {
+                x[i] = this.permutation[i] == c ? 1 : 0;
+            }
+
+            this.solveInPlace(x);
+
+            for (int b = 0; b < this.size; b++) {
+                if (inverses[b] != null) {
+                    for (int r = 0; r < this.n; r++) {
+                        inverses[b][r][c] = x[r * this.size + b];
+                    }
+                }
+            }
+        }
+
+        SquareMatrix[] output = new SquareMatrix[this.size];
+        for (int b = 0; b < this.size; b++) {
+            if (inverses[b] != null) {
+                output[b] = new SquareMatrix(inverses[b]);
+            }
+        }
+        return output;
+    }
+
+}
@@ -0,0 +1,85 @@
+/**
+ * This class represents a square matrix whose only nonzero entries are on the
+ * diagonal. Only the n diagonal entries are stored, and solving, inverting and
+ * taking the determinant all cost O(n).
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class DiagonalMatrix extends BandedMatrix {
+
+    /**
+     * Constructs the zero matrix of the given dimension
+     * @param n the number of rows and columns
+     */
+    public DiagonalMatrix(int n) {
+        super(n, 0, 0);
+    }
+
+    /**
+     * Constructs a matrix with the given diagonal
+     * @param diagonal the entries of the diagonal, from the top left
+     */
+    public DiagonalMatrix(double[] diagonal) {
+        super(0, diagonal);
+    }
+
+    @Override
+    public double[] solve(double[] b) throws MatrixException {
+        assert b.length == this.getN() : "Right hand side must have " + this.getN() + " entries";
+
+        double tolerance = this.getPivotTolerance();
+        double[] x = new double[b.length];
+        for (int i = 1; i <= x.length; i++) {
+            double d = this.getElement(i, i);
+            if (Math.abs(d) <= tolerance) {
+                throw this.notInvertible(this.getSmallestDiagonal());
+            }
+            x[i - 1] = b[i - 1] / d;
+        }
+        return x;
+    }
+
+    /**
+     * Calculates the determinant as the product of the diagonal
+     * @return the determinant of this matrix
+     */
+    @Override
+    public double getDeterminant() {
+        double det = 1;
+        for (int i = 1; i <= this.getN(); i++) {
+            det *= this.getElement(i, i);
+        }
+        return det;
+    }
+
+    /**
+     * Construct the inverse, which is diagonal with the reciprocals of this
+     * matrix's diagonal
+     * @return the inverse of this matrix
+     * @throws MatrixException if an entry of the diagonal is negligible next to
+     *                         the largest, or the ratio of the largest to the
+     *                         smallest is so large that no digit of the inverse
+     *                         would be correct
+     */
+    @Override
+    public DiagonalMatrix getInverse() throws MatrixException {
+        double tolerance = this.getPivotTolerance();
+        DiagonalMatrix output = new DiagonalMatrix(this.getN());
+        for (int i = 1; i <= this.getN(); i++) {
+            double d = this.getElement(i, i);
+            if (Math.abs(d) <= tolerance) {
+                throw this.notInvertible(this.getSmallestDiagonal());
+            }
+            output.setElement(i, i, 1 / d);
+        }
+        return this.checkCondition(output);
+    }
+
+    @Override
+    public DiagonalMatrix clone() {
+        DiagonalMatrix output = new DiagonalMatrix(this.getN());
+        this.copyInto(output);
+        return output;
+    }
+
+}
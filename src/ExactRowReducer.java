@@ -0,0 +1,525 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * This class finds the exact rank, pivot columns and reduced row echelon form of
+ * a matrix of integers. {@code Matrix} works with doubles and decides whether
+ * an entry is zero with a tolerance, which can give the wrong rank for large
+ * integer matrices. Here the matrix is instead row reduced modulo several primes
+ * just under 2^31, where every operation is exact and fits in a {@code long}.
+ * The primes are independent, so they are reduced in parallel.
+ * <p>
+ * The rank and pivot columns come from the images with the most pivots. A prime
+ * can only lose pivots when it happens to divide a minor of the matrix, so the
+ * images that agree on the best pivots are correct with overwhelming
+ * probability. The rational entries of the RREF are then rebuilt from those
+ * images with the Chinese remainder theorem and rational reconstruction, adding
+ * primes until a reconstruction is confirmed by primes it was not built from.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class ExactRowReducer {
+
+    private final static List<Long> PRIMES = new ArrayList<>();
+
+    private final long[][] mat;
+    private final int rows;
+    private final int cols;
+    private final int batchSize;
+    private int nextPrime;
+
+    // Modular images that agree on the best pivot columns found so far
+    private int[] pivots;
+    private final List<ModularImage> images = new ArrayList<>();
+
+    // The reconstructed RREF, built the first time it is requested
+    private BigInteger[][] numerators;
+    private BigInteger[][] denominators;
+
+    /**
+     * Row reduces the given matrix modulo a batch of primes, using one prime per
+     * available processor
+     * @param matrix a 2D array of ints, which is not modified
+     */
+    public ExactRowReducer(int[][] matrix) {
+        this(matrix, Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Row reduces the given matrix modulo a batch of primes
+     * @param matrix    a 2D array of ints, which is not modified
+     * @param batchSize the number of primes reduced in parallel at a time
+     */
+    public ExactRowReducer(int[][] matrix, int batchSize) {
+        assert batchSize >= 1 : "Must reduce at least one prime at a time";
+
+        this.rows = matrix.length;
+        this.cols = matrix[0].length;
+        this.batchSize = batchSize;
+        this.mat = new long[this.rows][this.cols];
+        for (int r = 0; r < this.rows; r++) {
+            assert matrix[r].length == this.cols : "Matrix should have the same number of elements in each row";
+            for (int c = 0; c < this.cols; c++) {
+                this.mat[r][c] = matrix[r][c];
+            }
+        }
+
+        this.addImages(this.reduceBatch());
+    }
+
+    /**
+     * Getter for the rank
+     * @return the number of nonzero rows in the RREF
+     */
+    public int getRank() {
+        return this.pivots.length;
+    }
+
+    /**
+     * Gets the columns that contain a leading 1 in the RREF
+     * @return the pivot columns in increasing order, starting at 1
+     */
+    public int[] getPivotColumns() {
+        int[] output = new int[this.pivots.length];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = this.pivots[i] + 1;
+        }
+        return output;
+    }
+
+    /**
+     * Gets the numerator of an entry of the RREF in lowest terms
+     * @param r the row of the entry
+     * @param c the column of the entry
+     * @return the numerator of the entry in row {@code r} and column {@code c}
+     */
+    public BigInteger getNumerator(int r, int c) {
+        assert r <= this.rows && r >= 1 : "Row " + r + " not in matrix";
+        assert c <= this.cols && c >= 1 : "Column " + c + " not in matrix";
+
+        this.reconstruct();
+        return r <= this.getRank() ? this.numerators[r - 1][c - 1] : BigInteger.ZERO;
+    }
+
+    /**
+     * Gets the denominator of an entry of the RREF in lowest terms
+     * @param r the row of the entry
+     * @param c the column of the entry
+     * @return the positive denominator of the entry in row {@code r} and column
+     *         {@code c}
+     */
+    public BigInteger getDenominator(int r, int c) {
+        assert r <= this.rows && r >= 1 : "Row " + r + " not in matrix";
+        assert c <= this.cols && c >= 1 : "Column " + c + " not in matrix";
+
+        this.reconstruct();
+        return r <= this.getRank() ? this.denominators[r - 1][c - 1] : BigInteger.ONE;
+    }
+
+    /**
+     * Creates the reduced row echelon form, rounding each exact entry to the
+     * nearest double
+     * @return a new {@code Matrix} holding the RREF, with the same dimensions as
+     *         the input
+     */
+    public Matrix getRREF() {
+        this.reconstruct();
+
+        double[][] output = new double[this.rows][this.cols];
+        for (int r = 0; r < this.getRank(); r++) {
+            for (int c = 0; c < this.cols; c++) {
+                output[r][c] = new BigDecimal(this.numerators[r][c])
+                        .divide(new BigDecimal(this.denominators[r][c]), MathContext.DECIMAL64)
+                        .doubleValue();
+            }
+        }
+        return new Matrix(output);
+    }
+
+    /**
+     * Rebuilds the rational entries of the RREF, adding batches of primes until a
+     * reconstruction is confirmed by every image in a batch it was not built from.
+     * Reconstruction is attempted each time the number of primes doubles.
+     */
+    private synchronized void reconstruct() {
+        if (this.numerators != null) {
+            return;
+        }
+
+        // Mixed radix digits of every entry, one plane per image, so that each entry
+        // is d0 + d1 p0 + d2 p0 p1 + ... and folding in an image needs only longs
+        List<long[][]> digits = new ArrayList<>();
+        int[] combinedPivots = this.pivots;
+        int nextAttempt = 1;
+
+        while (true) {
+            if (this.pivots != combinedPivots) {
+                // A better set of pivots turned up, so the images so far were unlucky
+                digits.clear();
+                combinedPivots = this.pivots;
+                nextAttempt = 1;
+            }
+            while (digits.size() < this.images.size()) {
+                digits.add(this.nextDigits(digits, this.images.get(digits.size())));
+            }
+
+            List<ModularImage> batch = this.reduceBatch();
+            if (digits.size() >= nextAttempt) {
+                nextAttempt = 2 * digits.size();
+                BigInteger[][] num = new BigInteger[this.getRank()][this.cols];
+                BigInteger[][] den = new BigInteger[this.getRank()][this.cols];
+                if (this.reconstructAll(digits, num, den) && this.confirms(num, den, batch)) {
+                    this.numerators = num;
+                    this.denominators = den;
+                    return;
+                }
+            }
+            this.addImages(batch);
+        }
+    }
+
+    /**
+     * Computes the next mixed radix digit of every entry with Garner's algorithm
+     * @param digits the digit planes for the images already combined
+     * @param image  the image being folded in
+     * @return the new digit plane
+     */
+    private long[][] nextDigits(List<long[][]> digits, ModularImage image) {
+        int k = digits.size();
+        long p = image.prime;
+        long[] radix = new long[k];
+        long modulus = 1;
+        for (int j = 0; j < k; j++) {
+            radix[j] = this.images.get(j).prime % p;
+            modulus = modulus * radix[j] % p;
+        }
+        long inverse = modInverse(modulus, p);
+
+        int[] free = this.getFreeColumns();
+        long[][] plane = new long[this.getRank()][free.length];
+        for (int r = 0; r < plane.length; r++) {
+            for (int i = 0; i < free.length; i++) {
+                // The value of the entry so far, modulo p
+                long x = 0;
+                for (int j = k - 1; j >= 0; j--) {
+                    x = (x * radix[j] + digits.get(j)[r][i]) % p;
+                }
+                plane[r][i] = Math.floorMod(image.rref[r][free[i]] - x, p) * inverse % p;
+            }
+        }
+        return plane;
+    }
+
+    /**
+     * Rebuilds every entry from its mixed radix digits and reconstructs it as a
+     * fraction. Entries in pivot columns are always 0 or 1, so only the other
+     * columns have digits.
+     * @return whether every entry could be reconstructed
+     */
+    private boolean reconstructAll(List<long[][]> digits, BigInteger[][] num, BigInteger[][] den) {
+        int k = digits.size();
+        BigInteger[] radix = new BigInteger[k];
+        BigInteger modulus = BigInteger.ONE;
+        for (int j = 0; j < k; j++) {
+            radix[j] = BigInteger.valueOf(this.images.get(j).prime);
+            modulus = modulus.multiply(radix[j]);
+        }
+
+        for (int r = 0; r < num.length; r++) {
+            for (int pivot : this.pivots) {
+                num[r][pivot] = pivot == this.pivots[r] ? BigInteger.ONE : BigInteger.ZERO;
+                den[r][pivot] = BigInteger.ONE;
+            }
+        }
+
+        // Every entry of the RREF divides the same determinant, so once a common
+        // denominator is known, most entries are just x * common mod M
+        BigInteger bound = modulus.shiftRight(1).sqrt();
+        BigInteger half = modulus.shiftRight(1);
+        BigInteger common = BigInteger.ONE;
+        BigInteger[] fraction = new BigInteger[2];
+        int[] free = this.getFreeColumns();
+        for (int r = 0; r < num.length; r++) {
+            for (int i = 0; i < free.length; i++) {
+                BigInteger x = BigInteger.ZERO;
+                for (int j = k - 1; j >= 0; j--) {
+                    x = x.multiply(radix[j]).add(BigInteger.valueOf(digits.get(j)[r][i]));
+                }
+
+                BigInteger scaled = x.multiply(common).mod(modulus);
+                if (scaled.compareTo(half) > 0) {
+                    scaled = scaled.subtract(modulus);
+                }
+                BigInteger numerator;
+                BigInteger denominator;
+                if (scaled.abs().compareTo(bound) <= 0) {
+                    numerator = scaled;
+                    denominator = common;
+                } else if (reconstructRational(scaled.mod(modulus), modulus, fraction)) {
+                    common = common.multiply(fraction[1]);
+                    if (common.compareTo(bound) > 0) {
+                        return false;
+                    }
+                    numerator = fraction[0];
+                    denominator = common;
+                } else {
+                    return false;
+                }
+
+                BigInteger gcd = numerator.gcd(denominator);
+                num[r][free[i]] = numerator.divide(gcd);
+                den[r][free[i]] = denominator.divide(gcd);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the columns without a pivot, which are the only ones whose entries
+     * have to be reconstructed
+     * @return the non-pivot columns in increasing order, starting at 0
+     */
+    private int[] getFreeColumns() {
+        int[] free = new int[this.cols - this.pivots.length];
+        int i = 0;
+        int p = 0;
+        for (int c = 0; c < this.cols; c++) {
+            if (p < this.pivots.length && this.pivots[p] == c) {
+                p++;
+            } else {
+                free[i++] = c;
+            }
+        }
+        return free;
+    }
+
+    /**
+     * Checks a reconstructed RREF against images that were not used to build it
+     * @return whether every image has the same pivots and agrees with each entry
+     */
+    private boolean confirms(BigInteger[][] num, BigInteger[][] den, List<ModularImage> batch) {
+        for (ModularImage image : batch) {
+            if (!Arrays.equals(image.pivots, this.pivots)) {
+                return false;
+            }
+            BigInteger p = BigInteger.valueOf(image.prime);
+            for (int r = 0; r < num.length; r++) {
+                for (int c : this.getFreeColumns()) {
+                    BigInteger d = den[r][c].mod(p);
+                    if (d.signum() == 0) {
+                        return false;
+                    }
+                    long expected = num[r][c].mod(p).multiply(d.modInverse(p)).mod(p).longValue();
+                    if (expected != image.rref[r][c]) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the fraction n/d with |n| and d at most sqrt(m/2) that is congruent to
+     * {@code u} modulo {@code m}, using the extended Euclidean algorithm
+     * @param u        a residue modulo {@code m}
+     * @param m        the modulus
+     * @param fraction an array that receives the numerator and denominator
+     * @return whether such a fraction exists
+     */
+    private static boolean reconstructRational(BigInteger u, BigInteger m, BigInteger[] fraction) {
+        BigInteger bound = m.shiftRight(1).sqrt();
+        BigInteger r0 = m, r1 = u;
+        BigInteger s0 = BigInteger.ZERO, s1 = BigInteger.ONE;
+        while (r1.compareTo(bound) > 0) {
+            BigInteger[] qr = r0.divideAndRemainder(r1);
+            r0 = r1;
+            r1 = qr[1];
+            BigInteger s = s0.subtract(qr[0].multiply(s1));
+            s0 = s1;
+            s1 = s;
+        }
+        if (s1.signum() == 0 || s1.abs().compareTo(bound) > 0 || !r1.gcd(s1).equals(BigInteger.ONE)) {
+            return false;
+        }
+        fraction[0] = s1.signum() < 0 ? r1.negate() : r1;
+        fraction[1] = s1.abs();
+        return true;
+    }
+
+    /**
+     * Keeps the images whose pivots are the best seen so far. More pivots are
+     * better, and among images with the same rank, earlier pivot columns are
+     * better, since a prime can only delay or remove pivots.
+     * @param batch newly reduced images
+     */
+    private void addImages(List<ModularImage> batch) {
+        for (ModularImage image : batch) {
+            int comparison = this.pivots == null ? 1 : comparePivots(image.pivots, this.pivots);
+            if (comparison > 0) {
+                this.pivots = image.pivots;
+                this.images.clear();
+            }
+            if (comparison >= 0) {
+                this.images.add(image);
+            }
+        }
+    }
+
+    /**
+     * @return a positive number if pivot set {@code a} is better than {@code b},
+     *         zero if they are equal and a negative number otherwise
+     */
+    private static int comparePivots(int[] a, int[] b) {
+        if (a.length != b.length) {
+            return a.length - b.length;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return b[i] - a[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Row reduces the matrix modulo the next batch of primes in parallel
+     * @return the modular images
+     */
+    private List<ModularImage> reduceBatch() {
+        long[] primes = new long[this.batchSize];
+        for (int i = 0; i < this.batchSize; i++) {
+            primes[i] = getPrime(this.nextPrime++);
+        }
+        return IntStream.range(0, this.batchSize).parallel().mapToObj(i -> this.reduceModulo(primes[i]))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Finds the reduced row echelon form of the matrix modulo a prime. Every
+     * entry stays below 2^31, so products fit in a {@code long}.
+     * @param p a prime less than 2^31
+     * @return the modular image
+     */
+    private ModularImage reduceModulo(long p) {
+        long[][] a = new long[this.rows][this.cols];
+        for (int r = 0; r < this.rows; r++) {
+            for (int c = 0; c < this.cols; c++) {
+                a[r][c] = Math.floorMod(this.mat[r][c], p);
+            }
+        }
+
+        int[] pivotCols = new int[Math.min(this.rows, this.cols)];
+        int rank = 0;
+        for (int c = 0; c < this.cols && rank < this.rows; c++) {
+            int pivotRow = -1;
+            for (int r = rank; r < this.rows; r++) {
+                if (a[r][c] != 0) {
+                    pivotRow = r;
+                    break;
+                }
+            }
+            if (pivotRow == -1) {
+                continue;
+            }
+
+            long[] temp = a[pivotRow];
+            a[pivotRow] = a[rank];
+            a[rank] = temp;
+
+            long[] pivotRowArr = a[rank];
+            long inverse = modInverse(pivotRowArr[c], p);
+            for (int i = c; i < this.cols; i++) {
+                pivotRowArr[i] = pivotRowArr[i] * inverse % p;
+            }
+
+            for (int r = 0; r < this.rows; r++) {
+                long factor = a[r][c];
+                if (r == rank || factor == 0) {
+                    continue;
+                }
+                long negated = p - factor;
+                long[] row = a[r];
+                for (int i = c; i < this.cols; i++) {
+                    row[i] = (row[i] + negated * pivotRowArr[i]) % p;
+                }
+            }
+            pivotCols[rank++] = c;
+        }
+
+        long[][] rref = new long[rank][];
+        System.arraycopy(a, 0, rref, 0, rank);
+        return new ModularImage(p, Arrays.copyOf(pivotCols, rank), rref);
+    }
+
+    /**
+     * Computes the inverse of {@code a} modulo the prime {@code p} with the
+     * extended Euclidean algorithm
+     */
+    private static long modInverse(long a, long p) {
+        long r0 = p, r1 = a;
+        long s0 = 0, s1 = 1;
+        while (r1 != 0) {
+            long q = r0 / r1;
+            long r = r0 - q * r1;
+            r0 = r1;
+            r1 = r;
+            long s = s0 - q * s1;
+            s0 = s1;
+            s1 = s;
+        }
+        return Math.floorMod(s0, p);
+    }
+
+    /**
+     * Gets the i-th largest prime below 2^31, generating more as needed
+     * @param i the index of the prime, starting at 0
+     * @return the prime
+     */
+    private static long getPrime(int i) {
+        synchronized (PRIMES) {
+            long candidate = PRIMES.isEmpty() ? Integer.MAX_VALUE : PRIMES.get(PRIMES.size() - 1) - 2;
+            while (PRIMES.size() <= i) {
+                if (isPrime(candidate)) {
+                    PRIMES.add(candidate);
+                }
+                candidate -= 2;
+            }
+            return PRIMES.get(i);
+        }
+    }
+
+    /**
+     * Checks whether an odd number is prime by trial division
+     */
+    private static boolean isPrime(long n) {
+        for (long d = 3; d * d <= n; d += 2) {
+            if (n % d == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The reduced row echelon form of the matrix modulo one prime
+     */
+    private static final class ModularImage {
+        final long prime;
+        final int[] pivots;
+        final long[][] rref;
+
+        ModularImage(long prime, int[] pivots, long[][] rref) {
+            this.prime = prime;
+            this.pivots = pivots;
+            this.rref = rref;
+        }
+    }
+
+}
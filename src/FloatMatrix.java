@@ -0,0 +1,200 @@
+/**
+ * This class represents a matrix stored in single precision. It is backed by a
+ * two-dimensional array of floats, so it takes half the memory of a
+ * {@code Matrix} of the same size, at the cost of only about 7 significant
+ * digits per entry. It is meant as compact storage for work that does not need
+ * full precision, such as the factorization in {@code MixedPrecisionSolver}.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class FloatMatrix {
+
+    // By convention in this class, rows and columns start at 1
+
+    private float[][] mat;
+    private int rows;
+    private int cols;
+
+    /**
+     * Constructs the zero matrix with {@code r} rows and {@code c} columns
+     * @param r number of rows
+     * @param c number of columns
+     */
+    public FloatMatrix(int r, int c) {
+        assert r >= 1 : r + " rows is not possible";
+        assert c >= 1 : c + " columns is not possible";
+
+        this.mat = new float[r][c];
+        this.rows = r;
+        this.cols = c;
+    }
+
+    /**
+     * Constructs a matrix backed by the given data
+     * @param matrix a 2D array of floats to back this matrix
+     */
+    public FloatMatrix(float[][] matrix) {
+        this.mat = matrix;
+        this.rows = matrix.length;
+        this.cols = matrix[0].length;
+    }
+
+    /**
+     * Constructs a single precision copy of the given matrix, rounding each entry
+     * to the nearest float
+     * @param matrix the matrix to be copied
+     */
+    public FloatMatrix(Matrix matrix) {
+        this(matrix.getRows(), matrix.getCols());
+        for (int r = 1; r <= this.rows; r++) {
+            double[] source = matrix.getRow(r);
+            float[] dest = this.mat[r - 1];
+            for (int c = 0; c < this.cols; c++) {
+                dest[c] = (float) source[c];
+            }
+        }
+    }
+
+    /**
+     * Converts this matrix back to double precision
+     * @return a new {@code Matrix} with the same entries as this one. Note that
+     *         this method will return a {@code SquareMatrix} if rows = columns
+     */
+    public Matrix toMatrix() {
+        double[][] output = new double[this.rows][this.cols];
+        for (int r = 0; r < this.rows; r++) {
+            for (int c = 0; c < this.cols; c++) {
+                output[r][c] = this.mat[r][c];
+            }
+        }
+        return this.rows == this.cols ? new SquareMatrix(output) : new Matrix(output);
+    }
+
+    /**
+     * @return a new {@code FloatMatrix} with the same entries as this one
+     */
+    @Override
+    public FloatMatrix clone() {
+        float[][] outputMat = new float[this.rows][];
+        for (int r = 0; r < this.rows; r++) {
+            outputMat[r] = this.mat[r].clone();
+        }
+        return new FloatMatrix(outputMat);
+    }
+
+    /**
+     * Getter for the 2D array that backs this matrix
+     * @return the 2D array for this matrix
+     */
+    public float[][] getMatrix() {
+        return this.mat;
+    }
+
+    /**
+     * Getter for the number of rows
+     * @return the number of rows in this matrix
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Getter for the number of columns
+     * @return the number of columns in this matrix
+     */
+    public int getCols() {
+        return this.cols;
+    }
+
+    /**
+     * Getter for a single row
+     * @param row the row to be accessed
+     * @return the requested row as an array of floats
+     */
+    public float[] getRow(int row) {
+        assert row <= this.rows && row >= 1 : "Row " + row + " not in matrix";
+
+        return this.mat[row - 1];
+    }
+
+    /**
+     * Getter for the element in a particular row and column
+     * @param r the row of the desired element. {@code 1 <= r <= this.getRows()}
+     * @param c the column of the desired element. {@code 1 <= c <= this.getCols()}
+     * @return the element in row {@code r} and column {@code c}
+     */
+    public float getElement(int r, int c) {
+        assert r <= this.rows && r >= 1 : "Row " + r + " not in matrix";
+        assert c <= this.cols && c >= 1 : "Column " + c + " not in matrix";
+        return this.mat[r - 1][c - 1];
+    }
+
+    /**
+     * Setter for a single element
+     * @param r     the row of the element to be set
+     * @param c     the column of the element to be set
+     * @param value the new value to be set in row {@code r} and column {@code c}
+     */
+    public void setElement(int r, int c, float value) {
+        assert r >= 1 && r <= this.rows : "Row " + r + " not in matrix";
+        assert c >= 1 && c <= this.cols : "Column " + c + " not in matrix";
+
+        this.mat[r - 1][c - 1] = value;
+    }
+
+    /**
+     * Scales {@code row} by {@code factor}
+     * @param row    the row to be scaled
+     * @param factor the factor to be scaled by
+     */
+    public void scaleRow(int row, float factor) {
+        assert row <= this.rows && row >= 1 : "Row " + row + " not in matrix";
+        assert factor != 0 : "Do not scale by zero";
+
+        float[] arr = this.mat[row - 1];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] *= factor;
+        }
+    }
+
+    /**
+     * Exchanges {@code rowOne} with {@code rowTwo}
+     * @param rowOne first row to be interchanged
+     * @param rowTwo second row to be interchanged
+     */
+    public void interchangeRows(int rowOne, int rowTwo) {
+        assert rowOne <= this.rows && rowOne >= 1 : "Row " + rowOne + " not in matrix";
+        assert rowTwo <= this.rows && rowTwo >= 1 : "Row " + rowTwo + " not in matrix";
+
+        float[] temp = this.mat[rowOne - 1];
+        this.mat[rowOne - 1] = this.mat[rowTwo - 1];
+        this.mat[rowTwo - 1] = temp;
+    }
+
+    /**
+     * Scales {@code rowOne} by {@code factor} and adds it to {@code rowTwo}
+     * @param rowOne the row to be scaled
+     * @param rowTwo the row being modified
+     * @param factor the scale factor for {@code rowOne}
+     */
+    public void addRows(int rowOne, int rowTwo, float factor) {
+        assert rowOne <= this.rows && rowOne >= 1 : "Row " + rowOne + " not in matrix";
+        assert rowTwo <= this.rows && rowTwo >= 1 : "Row " + rowTwo + " not in matrix";
+
+        float[] source = this.mat[rowOne - 1];
+        float[] dest = this.mat[rowTwo - 1];
+        for (int i = 0; i < source.length; i++) {
+            dest[i] += source[i] * factor;
+        }
+    }
+
+    /**
+     * Create a string representation of this matrix
+     * @return a string representation of this matrix
+     */
+    @Override
+    public String toString() {
+        return this.toMatrix().toString();
+    }
+
+}
@@ -0,0 +1,317 @@
+/**
+ * This class row reduces a matrix that arrives one row at a time. It keeps a
+ * basis for the rows received so far in which each row has a 1 in its own
+ * pivot column and a 0 in every other pivot column, so each new row only has to
+ * be reduced against that basis, which costs O(rank * cols) instead of reducing
+ * the whole matrix again. Rows that are linear combinations of earlier rows are
+ * discarded, so at most {@code cols} rows are ever stored no matter how many
+ * rows are added.
+ * <p>
+ * Like partial pivoting, each new row pivots on its largest remaining entry,
+ * which keeps the basis entries small. An entry only counts as nonzero if it is
+ * larger than the error expected relative to the row it came from, so the rank
+ * does not depend on the scale of the rows.
+ * <p>
+ * If the rows are those of an augmented matrix, the last column is the right
+ * hand side and {@link #isConsistent()} reports whether the system described by
+ * the rows so far has a solution.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class IncrementalEchelon {
+
+    /**
+     * How many times the rounding of a single reduction the tolerance allows.
+     * The basis rows carry the error of every reduction that built them, and
+     * the rows received are usually results of earlier arithmetic themselves.
+     */
+    final static double ERROR_MARGIN = 1e4;
+
+    private final int cols;
+    private final boolean augmented;
+
+    // Basis rows, ordered by pivot column. Each has a 1 in its own pivot column
+    // and 0 in every other pivot column. Only the first rank are in use
+    private final double[][] basis;
+    private final int[] pivots;
+    private final double[] scratch;
+    private int rank;
+    private long rowsAdded;
+    private double growth = 1;
+
+    /**
+     * Constructs an empty reduction for rows with the given number of columns
+     * @param cols the number of entries in each row
+     */
+    public IncrementalEchelon(int cols) {
+        this(cols, false);
+    }
+
+    /**
+     * Constructs an empty reduction for rows with the given number of columns
+     * @param cols      the number of entries in each row
+     * @param augmented whether the last column is the right hand side of a
+     *                  system of equations
+     */
+    public IncrementalEchelon(int cols, boolean augmented) {
+        assert cols >= 1 : cols + " columns is not possible";
+        assert !augmented || cols >= 2 : "An augmented matrix needs at least 2 columns";
+
+        this.cols = cols;
+        this.augmented = augmented;
+        this.basis = new double[cols][];
+        this.pivots = new int[cols];
+        this.scratch = new double[cols];
+    }
+
+    /**
+     * Reduces a new row against the rows received so far
+     * @param row the row to add, which is not modified
+     * @return whether the row increased the rank
+     */
+    public boolean addRow(double[] row) {
+        assert row.length == this.cols : "Row must have " + this.cols + " entries";
+
+        this.rowsAdded++;
+        double[] reduced = this.scratch;
+        System.arraycopy(row, 0, reduced, 0, this.cols);
+
+        double norm = 0;
+        for (double entry : row) {
+            norm = Math.max(norm, Math.abs(entry));
+        }
+        if (norm == 0.0) {
+            return false;
+        }
+
+        // Every basis row is zero in the other pivot columns, so one pass suffices
+        for (int i = 0; i < this.rank; i++) {
+            int pivot = this.pivots[i];
+            double factor = reduced[pivot];
+            if (factor == 0.0) {
+                continue;
+            }
+            double[] basisRow = this.basis[i];
+            for (int c = 0; c < this.cols; c++) {
+                reduced[c] -= factor * basisRow[c];
+            }
+            reduced[pivot] = 0;
+        }
+
+        // An entry is only a pivot if it is more than the error left in the row
+        double tolerance = tolerance(norm);
+        int coefficientCols = this.augmented ? this.cols - 1 : this.cols;
+        int pivotColumn = largestEntry(reduced, coefficientCols, tolerance);
+        if (pivotColumn == -1 && this.augmented && Math.abs(reduced[this.cols - 1]) > tolerance) {
+            // Only a row with no coefficients left may pivot in the right hand side
+            pivotColumn = this.cols - 1;
+        }
+        if (pivotColumn == -1) {
+            return false;
+        }
+
+        // Create a 1 in the pivot column, then clear it from the rest of the basis
+        double[] newRow = new double[this.cols];
+        double pivotEntry = reduced[pivotColumn];
+        for (int c = 0; c < this.cols; c++) {
+            if (Math.abs(reduced[c]) > tolerance) {
+                newRow[c] = reduced[c] / pivotEntry;
+            }
+        }
+        newRow[pivotColumn] = 1;
+        this.growth = Math.max(this.growth, maxAbs(newRow));
+
+        int position = this.rank;
+        for (int i = 0; i < this.rank; i++) {
+            double[] basisRow = this.basis[i];
+            double factor = basisRow[pivotColumn];
+            if (factor != 0.0) {
+                for (int c = 0; c < this.cols; c++) {
+                    basisRow[c] -= factor * newRow[c];
+                }
+                basisRow[pivotColumn] = 0;
+                this.growth = Math.max(this.growth, maxAbs(basisRow));
+            }
+            if (position == this.rank && this.pivots[i] > pivotColumn) {
+                position = i;
+            }
+        }
+
+        // Insert so that the pivot columns stay in increasing order
+        for (int i = this.rank; i > position; i--) {
+            this.basis[i] = this.basis[i - 1];
+            this.pivots[i] = this.pivots[i - 1];
+        }
+        this.basis[position] = newRow;
+        this.pivots[position] = pivotColumn;
+        this.rank++;
+        return true;
+    }
+
+    /**
+     * Finds the size below which an entry of a reduced row is treated as zero.
+     * Each basis row holds a 1 in its pivot column and no entry larger than the
+     * growth factor, so reducing a row against the basis makes an error of about
+     * cols * EPSILON * growth times the largest entry of the row. The error
+     * already stored in the basis comes on top of that.
+     * @param norm the largest absolute value of an entry of the original row
+     * @return the tolerance
+     */
+    private double tolerance(double norm) {
+        return ERROR_MARGIN * this.cols * LUDecomposition.EPSILON * this.growth * norm;
+    }
+
+    /**
+     * Finds the largest entry among the first columns of a row
+     * @param row       the row to search
+     * @param end       the number of columns to search
+     * @param tolerance the size an entry must exceed
+     * @return the index of the largest entry, or -1 if none exceeds the tolerance
+     */
+    private static int largestEntry(double[] row, int end, double tolerance) {
+        int index = -1;
+        double largest = tolerance;
+        for (int c = 0; c < end; c++) {
+            if (Math.abs(row[c]) > largest) {
+                largest = Math.abs(row[c]);
+                index = c;
+            }
+        }
+        return index;
+    }
+
+    private static double maxAbs(double[] row) {
+        double max = 0;
+        for (double entry : row) {
+            max = Math.max(max, Math.abs(entry));
+        }
+        return max;
+    }
+
+    /**
+     * Reduces every row of a matrix against the rows received so far
+     * @param mat a matrix whose rows are added in order
+     */
+    public void addRows(Matrix mat) {
+        for (int r = 1; r <= mat.getRows(); r++) {
+            this.addRow(mat.getRow(r));
+        }
+    }
+
+    /**
+     * Getter for the rank of the rows received so far
+     * @return the number of linearly independent rows received
+     */
+    public int getRank() {
+        return this.rank;
+    }
+
+    /**
+     * Getter for the number of rows received so far, including redundant ones
+     * @return the number of rows added
+     */
+    public long getRowsAdded() {
+        return this.rowsAdded;
+    }
+
+    /**
+     * Getter for the number of entries in each row
+     * @return the number of columns
+     */
+    public int getCols() {
+        return this.cols;
+    }
+
+    /**
+     * Gets the columns that contain a leading 1 in the RREF
+     * @return the pivot columns in increasing order, starting at 1
+     */
+    public int[] getPivotColumns() {
+        int[] columns = new int[this.rank];
+        this.reduceBasis(columns);
+        for (int i = 0; i < this.rank; i++) {
+            columns[i]++;
+        }
+        return columns;
+    }
+
+    /**
+     * A system is inconsistent if its RREF has a leading 1 in the right hand side
+     * column. A row only pivots in that column when none of its coefficients are
+     * left, which is exactly when it would have that leading 1, and since that
+     * column sorts last only the last basis row has to be checked.
+     * @return whether the system of equations received so far has a solution.
+     *         Always true if this reduction is not augmented.
+     */
+    public boolean isConsistent() {
+        return !this.augmented || this.rank == 0 || this.pivots[this.rank - 1] != this.cols - 1;
+    }
+
+    /**
+     * Creates the reduced row echelon form of the rows received so far. The zero
+     * rows that would follow are left out.
+     * @return a new {@code Matrix} holding the nonzero rows of the RREF, or a
+     *         single row of zeros if no nonzero row has been added
+     */
+    public Matrix getRREF() {
+        if (this.rank == 0) {
+            return new Matrix(1, this.cols);
+        }
+        return new Matrix(this.reduceBasis(new int[this.rank]));
+    }
+
+    /**
+     * Row reduces a copy of the basis into the RREF. The basis rows pivot on
+     * their largest entries rather than their leading ones, so the RREF is only
+     * built when asked for, in O(rank^2 * cols). The rows are independent, so
+     * partial pivoting finds a leading entry for every one of them.
+     * @param leadingColumns filled with the column of each leading 1, starting at 0
+     * @return the nonzero rows of the RREF
+     */
+    private double[][] reduceBasis(int[] leadingColumns) {
+        double[][] rref = new double[this.rank][];
+        double largest = 0;
+        for (int i = 0; i < this.rank; i++) {
+            rref[i] = this.basis[i].clone();
+            largest = Math.max(largest, maxAbs(rref[i]));
+        }
+        double tolerance = this.tolerance(largest);
+
+        int row = 0;
+        for (int c = 0; c < this.cols && row < this.rank; c++) {
+            int pivotRow = row;
+            for (int r = row + 1; r < this.rank; r++) {
+                if (Math.abs(rref[r][c]) > Math.abs(rref[pivotRow][c])) {
+                    pivotRow = r;
+                }
+            }
+            if (Math.abs(rref[pivotRow][c]) <= tolerance) {
+                for (int r = row; r < this.rank; r++) {
+                    rref[r][c] = 0;
+                }
+                continue;
+            }
+            double[] pivot = rref[pivotRow];
+            rref[pivotRow] = rref[row];
+            rref[row] = pivot;
+
+            double leadingEntry = pivot[c];
+            for (int k = c; k < this.cols; k++) {
+                pivot[k] /= leadingEntry;
+            }
+            pivot[c] = 1;
+            for (int r = 0; r < this.rank; r++) {
+                double factor = rref[r][c];
+                if (r != row && factor != 0.0) {
+                    for (int k = c; k < this.cols; k++) {
+                        rref[r][k] -= factor * pivot[k];
+                    }
+                    rref[r][c] = 0;
+                }
+            }
+            leadingColumns[row++] = c;
+        }
+        return rref;
+    }
+
+}
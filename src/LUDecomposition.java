@@ -0,0 +1,427 @@
+import java.util.Arrays;
+
+/**
+ * This class represents the LU factorization with partial pivoting of a
+ * {@code SquareMatrix}, so that PA = LU where P is a permutation, L is unit
+ * lower triangular and U is upper triangular. Both L and U are stored together
+ * in a single two-dimensional array. Once a matrix has been factored, solving
+ * a system with it only costs O(n^2).
+ * <p>
+ * The matrix is reported singular when a pivot is negligible next to the
+ * largest entry of the matrix, so the test does not depend on how the matrix
+ * is scaled. The factors also give a cheap estimate of the condition number,
+ * which measures how many digits are lost when solving with the matrix.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class LUDecomposition {
+
+    /**
+     * The distance from 1.0 to the next larger double
+     */
+    final static double EPSILON = Math.ulp(1.0);
+
+    /**
+     * The number of times the condition estimate improves its guess before
+     * settling, which is rarely reached in practice
+     */
+    final static int MAX_ESTIMATE_ITERATIONS = 5;
+
+    private final double[][] lu;
+    private final int[] permutation;
+    private final int n;
+    private final double norm;
+    private int permutationSign;
+    private boolean singular;
+    private boolean zeroPivot;
+    private double conditionNumber = -1;
+
+    /**
+     * Factors the given matrix without modifying it
+     * @param m a {@code SquareMatrix} to be factored
+     */
+    public LUDecomposition(SquareMatrix m) {
+        this(m.clone().getMatrix());
+    }
+
+    /**
+     * Factors the given array in place
+     * @param a a square 2D array that will be overwritten by the factorization
+     */
+    LUDecomposition(double[][] a) {
+        this.lu = a;
+        this.n = a.length;
+        this.permutation = new int[this.n];
+        for (int i = 0; i < this.n; i++) {
+            this.permutation[i] = i;
+        }
+        this.permutationSign = 1;
+
+        double maxColumnSum = 0;
+        double maxEntry = 0;
+        for (int c = 0; c < this.n; c++) {
+            double sum = 0;
+            for (int r = 0; r < this.n; r++) {
+                double entry = Math.abs(a[r][c]);
+                sum += entry;
+                maxEntry = Math.max(maxEntry, entry);
+            }
+            maxColumnSum = Math.max(maxColumnSum, sum);
+        }
+        this.norm = maxColumnSum;
+        this.factor(pivotTolerance(this.n, maxEntry));
+    }
+
+    /**
+     * Finds the size below which a pivot is treated as zero. Rounding errors in
+     * the elimination are about this large, so a smaller pivot cannot be told
+     * apart from zero.
+     * @param n        the dimension of the matrix
+     * @param maxEntry the largest absolute value of an entry of the matrix
+     * @return the pivot tolerance
+     */
+    static double pivotTolerance(int n, double maxEntry) {
+        return n * EPSILON * maxEntry;
+    }
+
+    /**
+     * Performs the elimination, choosing the largest entry in each column as the
+     * pivot
+     * @param tolerance the size at or below which a pivot makes the matrix
+     *                  singular
+     */
+    private void factor(double tolerance) {
+        for (int k = 0; k < this.n; k++) {
+            int pivotRow = k;
+            for (int r = k + 1; r < this.n; r++) {
+                if (Math.abs(this.lu[r][k]) > Math.abs(this.lu[pivotRow][k])) {
+                    pivotRow = r;
+                }
+            }
+
+            if (pivotRow != k) {
+                double[] temp = this.lu[pivotRow];
+                this.lu[pivotRow] = this.lu[k];
+                this.lu[k] = temp;
+                int tempIndex = this.permutation[pivotRow];
+                this.permutation[pivotRow] = this.permutation[k];
+                this.permutation[k] = tempIndex;
+                this.permutationSign = -this.permutationSign;
+            }
+
+            double[] pivotRowArr = this.lu[k];
+            double pivot = pivotRowArr[k];
+            if (Math.abs(pivot) <= tolerance) {
+                this.singular = true;
+            }
+            if (pivot == 0.0) {
+                this.zeroPivot = true;
+                continue;
+            }
+
+            for (int r = k + 1; r < this.n; r++) {
+                double[] row = this.lu[r];
+                double factor = row[k] / pivot;
+                row[k] = factor;
+                if (factor == 0.0) {
+                    continue;
+                }
+                for (int c = k + 1; c < this.n; c++) {
+                    row[c] -= factor * pivotRowArr[c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the dimension of the factored matrix
+     * @return the number of rows and columns
+     */
+    public int getN() {
+        return this.n;
+    }
+
+    /**
+     * Checks whether a pivot was negligible next to the largest entry of the
+     * matrix, meaning it is singular to working precision
+     * @return whether the factored matrix is singular
+     */
+    public boolean isSingular() {
+        return this.singular;
+    }
+
+    /**
+     * Calculates the determinant from the product of the pivots
+     * @return the determinant of the factored matrix
+     */
+    public double getDeterminant() {
+        double det = this.permutationSign;
+        for (int i = 0; i < this.n; i++) {
+            det *= this.lu[i][i];
+        }
+        return det;
+    }
+
+    /**
+     * Solves Ax = b, where A is the factored matrix
+     * @param b the right hand side, which is not modified
+     * @return the solution x
+     * @throws MatrixException if the factored matrix is singular
+     */
+    public double[] solve(double[] b) throws MatrixException {
+        assert b.length == this.n : "Right hand side must have " + this.n + " entries";
+        if (this.singular) {
+            throw this.notInvertible();
+        }
+
+        double[] x = new double[this.n];
+        for (int i = 0; i < this.n; i++) {
+            x[i] = b[this.permutation[i]];
+        }
+        this.solveInPlace(x);
+        return x;
+    }
+
+    /**
+     * Solves A^T x = b, where A is the factored matrix. Since PA = LU, this is
+     * U^T L^T P x = b.
+     * @param b the right hand side, which is not modified
+     * @return the solution x
+     * @throws MatrixException if the factored matrix is singular
+     */
+    public double[] solveTranspose(double[] b) throws MatrixException {
+        assert b.length == this.n : "Right hand side must have " + this.n + " entries";
+        if (this.singular) {
+            throw this.notInvertible();
+        }
+        return this.solveTransposeUnchecked(b);
+    }
+
+    /**
+     * Solves A^T x = b without checking for singularity
+     * @param b the right hand side, which is not modified
+     * @return the solution x
+     */
+    private double[] solveTransposeUnchecked(double[] b) {
+        double[] y = b.clone();
+        // Forward substitution with U^T, which is lower triangular
+        for (int i = 0; i < this.n; i++) {
+            double sum = y[i];
+            for (int j = 0; j < i; j++) {
+                sum -= this.lu[j][i] * y[j];
+            }
+            y[i] = sum / this.lu[i][i];
+        }
+        // Back substitution with L^T, which is unit upper triangular
+        for (int i = this.n - 1; i >= 0; i--) {
+            double sum = y[i];
+            for (int j = i + 1; j < this.n; j++) {
+                sum -= this.lu[j][i] * y[j];
+            }
+            y[i] = sum;
+        }
+        // Undo the permutation
+        double[] x = new double[this.n];
+        for (int i = 0; i < this.n; i++) {
+            x[this.permutation[i]] = y[i];
+        }
+        return x;
+    }
+
+    /**
+     * Gets the 1-norm of the factored matrix, its largest absolute column sum
+     * @return the 1-norm of the factored matrix
+     */
+    public double getNorm() {
+        return this.norm;
+    }
+
+    /**
+     * Estimates the condition number ||A|| ||A^-1|| in the 1-norm, without
+     * forming the inverse. About log10 of it is the number of digits lost when
+     * solving with the matrix, so a result near 1 / EPSILON means no digits are
+     * left. The estimate is computed once and costs a few solves, O(n^2).
+     * <p>
+     * ||A^-1|| is estimated with Hager's method as refined by Higham (the method
+     * behind LAPACK's condition estimates). It searches for the unit vector that
+     * A^-1 stretches the most, taking a gradient step at each iteration, and
+     * then checks one extra vector that catches the cases the search misses. The
+     * result is a lower bound that is almost always within a factor of 3.
+     * @return the estimated condition number, which is infinite if a pivot was
+     *         exactly zero
+     */
+    public double estimateConditionNumber() {
+        if (this.conditionNumber < 0) {
+            this.conditionNumber = this.zeroPivot ? Double.POSITIVE_INFINITY
+                    : this.norm * this.estimateInverseNorm();
+        }
+        return this.conditionNumber;
+    }
+
+    /**
+     * Estimates ||A^-1|| in the 1-norm
+     * @return a lower bound on the 1-norm of the inverse
+     */
+    private double estimateInverseNorm() {
+        double[] x = new double[this.n];
+        Arrays.fill(x, 1.0 / this.n);
+        double estimate = 0;
+        int previousIndex = -1;
+
+        for (int iteration = 1; iteration <= MAX_ESTIMATE_ITERATIONS; iteration++) {
+            double[] y = this.solveUnchecked(x);
+            double yNorm = 0;
+            for (double entry : y) {
+                yNorm += Math.abs(entry);
+            }
+            if (iteration > 1 && yNorm <= estimate) {
+                break;
+            }
+            estimate = yNorm;
+
+            // z is the gradient of ||A^-1 x|| at x
+            double[] signs = new double[this.n];
+            for (int i = 0; i < this.n; i++) {
+                signs[i] = y[i] >= 0 ? 1 : -1;
+            }
+            double[] z = this.solveTransposeUnchecked(signs);
+            int index = 0;
+            double zx = 0;
+            for (int i = 0; i < this.n; i++) {
+                if (Math.abs(z[i]) > Math.abs(z[index])) {
+                    index = i;
+                }
+                zx += z[i] * x[i];
+            }
+            // Stop at a local maximum, where no unit vector improves the estimate
+            if (index == previousIndex || Math.abs(z[index]) <= zx) {
+                break;
+            }
+            Arrays.fill(x, 0);
+            x[index] = 1;
+            previousIndex = index;
+        }
+
+        // Higham's extra vector, with alternating signs and growing entries
+        if (this.n > 1) {
+            for (int i = 0; i < this.n; i++) {
+                x[i] = (i % 2 == 0 ? 1 : -1) * (1 + (double) i / (this.n - 1));
+            }
+            double[] y = this.solveUnchecked(x);
+            double yNorm = 0;
+            for (double entry : y) {
+                yNorm += Math.abs(entry);
+            }
+            estimate = Math.max(estimate, 2 * yNorm / (3 * this.n));
+        }
+        return estimate;
+    }
+
+    /**
+     * Solves Ax = b without checking for singularity
+     * @param b the right hand side, which is not modified
+     * @return the solution x
+     */
+    private double[] solveUnchecked(double[] b) {
+        double[] x = new double[this.n];
+        for (int i = 0; i < this.n; i++) {
+            x[i] = b[this.permutation[i]];
+        }
+        this.solveInPlace(x);
+        return x;
+    }
+
+    /**
+     * Creates the exception for a matrix that cannot be inverted, reporting its
+     * estimated condition number
+     * @return the exception to throw
+     */
+    private MatrixException notInvertible() {
+        return notInvertible(this.estimateConditionNumber());
+    }
+
+    /**
+     * Creates the exception for a matrix that cannot be inverted
+     * @param conditionNumber the estimated condition number of the matrix
+     * @return the exception to throw
+     */
+    static MatrixException notInvertible(double conditionNumber) {
+        return new MatrixException(String.format("Matrix is not invertible, its estimated condition number is %.3g",
+                conditionNumber));
+    }
+
+    /**
+     * Checks whether a condition number is so large that no digit of an inverse
+     * or solution would be correct
+     * @param conditionNumber the condition number in the 1-norm
+     * @return whether the matrix should be treated as not invertible
+     */
+    static boolean isTooIllConditioned(double conditionNumber) {
+        return conditionNumber * EPSILON >= 1;
+    }
+
+    /**
+     * Solves LUx = y in place, where {@code x} already holds the permuted right
+     * hand side y
+     * @param x the permuted right hand side, overwritten by the solution
+     */
+    private void solveInPlace(double[] x) {
+        // Forward substitution with the unit lower triangle
+        for (int i = 0; i < this.n; i++) {
+            double[] row = this.lu[i];
+            double sum = x[i];
+            for (int j = 0; j < i; j++) {
+                sum -= row[j] * x[j];
+            }
+            x[i] = sum;
+        }
+        // Back substitution with the upper triangle
+        for (int i = this.n - 1; i >= 0; i--) {
+            double[] row = this.lu[i];
+            double sum = x[i];
+            for (int j = i + 1; j < this.n; j++) {
+                sum -= row[j] * x[j];
+            }
+            x[i] = sum / row[i];
+        }
+    }
+
+    /**
+     * Construct the inverse of the factored matrix, one column at a time
+     * @return a 2D array holding the inverse
+     * @throws MatrixException if the factored matrix is singular, or so badly
+     *                         conditioned that no digit of the inverse would be
+     *                         correct
+     */
+    double[][] getInverseArray() throws MatrixException {
+        if (this.singular || isTooIllConditioned(this.estimateConditionNumber())) {
+            throw this.notInvertible();
+        }
+
+        double[][] inverse = new double[this.n][this.n];
+        double[] column = new double[this.n];
+        for (int c = 0; c < this.n; c++) {
+            for (int i = 0; i < this.n; i++) {
+                column[i] = this.permutation[i] == c ? 1 : 0;
+            }
+            this.solveInPlace(column);
+            for (int r = 0; r < this.n; r++) {
+                inverse[r][c] = column[r];
+            }
+        }
+        return inverse;
+    }
+
+    /**
+     * Construct the inverse of the factored matrix
+     * @return the inverse of the factored matrix
+     * @throws MatrixException if the factored matrix is singular, or so badly
+     *                         conditioned that no digit of the inverse would be
+     *                         correct. The message reports the estimated
+     *                         condition number.
+     */
+    public SquareMatrix getInverse() throws MatrixException {
+        return new SquareMatrix(this.getInverseArray());
+    }
+
+}
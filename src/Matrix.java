@@ -15,7 +15,7 @@ public class Matrix {
      * This is used as how close a double has to be to be considered equal to zero
      * for purposes of double equality comparison
      */
-    private final static double DELTA = 0.00000001;
+    final static double DELTA = 0.00000001;
 
     private double determinant;
     private double[][] mat;
@@ -56,6 +56,20 @@ public class Matrix {
 
     }
 
+    /**
+     * Constructs a matrix of the given size backed by the given array, which may
+     * be null for subclasses that store their entries in some other way. Such a
+     * subclass must override every method that uses the array.
+     * @param r      number of rows
+     * @param c      number of columns
+     * @param matrix a 2D array with {@code r} rows and {@code c} columns, or null
+     */
+    protected Matrix(int r, int c, double[][] matrix) {
+        this.mat = matrix;
+        this.rows = r;
+        this.cols = c;
+    }
+
     /**
      * Constructs a matrix with the given data in it
      * @param matrix a 2D array of ints to be copied into the matrix
@@ -148,32 +162,21 @@ public class Matrix {
      * @return an echelon form of {@code input}
      */
     public static Matrix createEchelonForm(Matrix input) {
-        Matrix output = input.clone();
-
-        double[][] matrix = output.getMatrix();
-
-        // Sort by the number of leading zeros in each row
-        Arrays.sort(matrix, (rowOne, rowTwo) -> countLeadingZeros(rowOne) - countLeadingZeros(rowTwo));
-
-        output.setMatrix(matrix);
-
-        int currentRow = 1;
-
-        while (currentRow <= output.rows - 1) {
-            if (output.isAllZeros(currentRow)) {
-                currentRow += 1;
-                continue;
-            } else {
-                for (int r = currentRow + 1; r <= output.getRows(); r++) {
-                    int leadingEntryColumn = output.getLeadingEntryColumn(currentRow);
-                    double factor = -output.getElement(r, leadingEntryColumn) / output.getLeadingEntry(currentRow);
-                    output.addRows(currentRow, r, factor);
-                }
-                currentRow += 1;
-            }
-        }
+        return createEchelonForm(input, MatrixWorkspace.local());
+    }
 
-        output.moveZerosToBottom();
+    /**
+     * This will create and return an echelon form of the given matrix, without
+     * modifying the input's contents. The result is stored in an array borrowed
+     * from the workspace, which can be handed back with
+     * {@code ws.release(output)} once the result is no longer needed.
+     * @param input a {@code Matrix} whose echelon form is to be found
+     * @param ws    the workspace to borrow the result and scratch storage from
+     * @return an echelon form of {@code input}
+     */
+    public static Matrix createEchelonForm(Matrix input, MatrixWorkspace ws) {
+        Matrix output = copyInto(input, ws);
+        output.reduceToEchelon(ws);
         return output;
     }
 
@@ -184,39 +187,76 @@ public class Matrix {
      * @return the reduced row echelon form of {@code input}
      */
     public static Matrix getRREF(Matrix input) {
-        Matrix output = createEchelonForm(input);
-
-        // create a leading 1 in each nonzero row
-        for (int i = 1; i <= output.getRows(); i++) {
-            double leadingEntry = output.getLeadingEntry(i);
-            if (leadingEntry != 0) {
-                output.scaleRow(i, 1 / leadingEntry);
-            }
-        }
-
-        int currentRow = output.getRows();
-
-        while (currentRow >= 1) {
-            if (output.isAllZeros(currentRow)) {
-                currentRow -= 1;
-                continue;
-            } else {
-                int leadingEntryColumn = output.getLeadingEntryColumn(currentRow);
-                for (int r = currentRow - 1; r >= 1; r--) {
+        return getRREF(input, MatrixWorkspace.local());
+    }
 
-                    if (leadingEntryColumn != -1) { // if that row is not all zeros
-                        double factor = -output.getElement(r, leadingEntryColumn);
-                        output.addRows(currentRow, r, factor);
-                    }
+    /**
+     * Given a matrix as an input, it will find that matrix's reduced row echelon
+     * form, returning that as a new matrix. The result is stored in an array
+     * borrowed from the workspace, which can be handed back with
+     * {@code ws.release(output)} once the result is no longer needed.
+     * @param input a {@code Matrix} whose reduced row echelon form is to be found
+     * @param ws    the workspace to borrow the result and scratch storage from
+     * @return the reduced row echelon form of {@code input}
+     */
+    public static Matrix getRREF(Matrix input, MatrixWorkspace ws) {
+        Matrix output = copyInto(input, ws);
+        output.reduceToRREF(ws);
+        return output;
+    }
 
+    /**
+     * Copies a matrix into an array borrowed from a workspace. Row operations do
+     * not keep a structure, so a structured matrix is copied as a dense one.
+     * @param input the matrix to copy
+     * @param ws    the workspace to borrow the copy's storage from
+     * @return a dense matrix with the same entries as {@code input}. Note that
+     *         this method will return a {@code SquareMatrix} if rows = columns
+     */
+    private static Matrix copyInto(Matrix input, MatrixWorkspace ws) {
+        int rows = input.getRows();
+        int cols = input.getCols();
+        double[][] result = ws.borrow(rows, cols);
+        for (int r = 1; r <= rows; r++) {
+            double[] dest = result[r - 1];
+            if (input instanceof StructuredMatrix) {
+                // A borrowed array holds old entries, so clear outside the pattern
+                StructuredMatrix structured = (StructuredMatrix) input;
+                Arrays.fill(dest, 0.0);
+                for (int c = structured.getFirstColumn(r); c <= structured.getLastColumn(r); c++) {
+                    dest[c - 1] = structured.getElement(r, c);
                 }
-                currentRow -= 1;
+            } else {
+                System.arraycopy(input.getRow(r), 0, dest, 0, cols);
             }
         }
+        return rows == cols ? new SquareMatrix(result) : new Matrix(result);
+    }
 
-        output.moveZerosToBottom();
+    /**
+     * Sorts the rows of this matrix by their number of leading zeros. The counts
+     * are found once per row and the rows are insertion sorted, which keeps rows
+     * with equal counts in order and needs no temporary arrays.
+     * @param ws the workspace to borrow scratch storage from
+     */
+    private void sortByLeadingZeros(MatrixWorkspace ws) {
+        int[] keys = ws.intBuffer(this.rows);
+        for (int i = 0; i < this.rows; i++) {
+            keys[i] = countLeadingZeros(this.mat[i]);
+        }
 
-        return output;
+        for (int i = 1; i < this.rows; i++) {
+            int key = keys[i];
+            double[] row = this.mat[i];
+            int j = i - 1;
+            while (j >= 0 && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                this.mat[j + 1] = this.mat[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            this.mat[j + 1] = row;
+        }
     }
 
     /**
@@ -224,7 +264,7 @@ public class Matrix {
      */
     @Override
     public Matrix clone() {
-        double[][] outputMat = new double[this.getRows()][this.getCols()];
+        double[][] outputMat = new double[this.getRows()][];
         for (int r = 1; r <= outputMat.length; r++) {
             outputMat[r - 1] = this.getRow(r).clone();
         }
@@ -303,7 +343,7 @@ public class Matrix {
 
         double[] output = new double[this.cols];
         for (int i = 0; i < this.rows; i++) {
-            output[i] = this.mat[i][col - 1];
+            output[i] = this.getElement(i + 1, col);
         }
 
         return output;
@@ -405,47 +445,47 @@ public class Matrix {
      *         {@code SquareMatrix} if rows = columns
      */
     public static Matrix getMinor(int i, int j, Matrix mat) {
-        // The (i,j) minor of a matrix is the matrix without row i and column j
-
-        double[] arr = new double[(mat.getRows() - 1) * (mat.getCols() - 1)];
-        // z keeps track of position of inserting elements in the 1D array
-        int z = 0;
-        for (int r = 1; r <= mat.getRows(); r++) {
-            for (int c = 1; c <= mat.getCols(); c++) {
-                if (r == i || c == j) {
-                } // If we are in the i-th row or the j-th column:
-                // Do not insert into the new matrix
-                else {
-                    arr[z] = mat.getElement(r, c);
-                    z++;
-                }
-            }
-        }
-        return mat.getRows() == mat.getCols()
-                ? new SquareMatrix(arrayToMatrix(mat.getRows() - 1, mat.getCols() - 1, arr))
-                        : new Matrix(arrayToMatrix(mat.getRows() - 1, mat.getCols(), arr));
+        return fillMinor(i, j, mat, new double[mat.getRows() - 1][mat.getCols() - 1]);
     }
 
     /**
-     * Converts a one dimensional array of doubles to a two-dimensional array that
-     * could be used to back a {@code Matrix}.
-     * @param rows the number of rows to have in the 2D array
-     * @param cols the number of columns to have in the 2D array
-     * @param arr  the 1D array that is being made into a 2D array
-     * @return a 2D array with the elements of {@code arr} copied into it
+     * Creates the (i, j) minor of a given matrix in storage borrowed from a
+     * workspace. Once the minor is no longer needed, its array can be handed back
+     * with {@code ws.release(minor)}.
+     * @param i   the row to be excluded
+     * @param j   the column to be excluded
+     * @param mat the matrix to find the minor of
+     * @param ws  the workspace to borrow the minor's storage from
+     * @return the (i, j) minor of {@code mat}. Note that this method will return a
+     *         {@code SquareMatrix} if rows = columns
      */
-    private static double[][] arrayToMatrix(int rows, int cols, double[] arr) {
-        assert rows * cols == arr.length : "Incorrect number of elements or incorrect parameter for rows or cols";
+    public static Matrix getMinor(int i, int j, Matrix mat, MatrixWorkspace ws) {
+        return fillMinor(i, j, mat, ws.borrow(mat.getRows() - 1, mat.getCols() - 1));
+    }
 
-        double[][] result = new double[rows][cols];
-        int i = 0;
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                result[r][c] = arr[i];
-                i++;
+    /**
+     * Copies the (i, j) minor of a given matrix into an array
+     * @param i      the row to be excluded
+     * @param j      the column to be excluded
+     * @param mat    the matrix to find the minor of
+     * @param result an array with one fewer row and column than {@code mat}
+     * @return a matrix backed by {@code result}
+     */
+    private static Matrix fillMinor(int i, int j, Matrix mat, double[][] result) {
+        // The (i,j) minor of a matrix is the matrix without row i and column j
+        int z = 0;
+        for (int r = 1; r <= mat.getRows(); r++) {
+            if (r == i) {
+                continue;
             }
+            double[] source = mat.getRow(r);
+            double[] dest = result[z];
+            // Copy the entries before and after column j
+            System.arraycopy(source, 0, dest, 0, j - 1);
+            System.arraycopy(source, j, dest, j - 1, source.length - j);
+            z++;
         }
-        return result;
+        return mat.getRows() == mat.getCols() ? new SquareMatrix(result) : new Matrix(result);
     }
 
     /**
@@ -476,6 +516,52 @@ public class Matrix {
         this.setMatrix(add(this, other).getMatrix());
     }
 
+    /**
+     * Multiplies two matrices together with the classical algorithm and returns a
+     * new matrix storing the product
+     * @param one the left factor
+     * @param two the right factor
+     * @return the product of {@code one} and {@code two}. Note that this method
+     *         will return a {@code SquareMatrix} if the product is square. If
+     *         both factors are structured, the product is banded with the sums
+     *         of their bandwidths, and is returned as a {@code TriangularMatrix}
+     *         if one sum is zero and the other spans the matrix, as a
+     *         {@code BandedMatrix} of the most specific type if the band leaves
+     *         some entries out, and as a dense {@code SquareMatrix} otherwise
+     */
+    public static Matrix multiply(Matrix one, Matrix two) {
+        assert one.getCols() == two.getRows() : "Columns of the first matrix must match rows of the second";
+
+        // Only the nonzero entries of a structured factor need to be visited
+        if (one instanceof StructuredMatrix) {
+            return ((StructuredMatrix) one).multiply(two);
+        }
+        if (two instanceof StructuredMatrix) {
+            return ((StructuredMatrix) two).multiplyOnLeft(one);
+        }
+
+        int rows = one.getRows();
+        int cols = two.getCols();
+        double[][] result = new double[rows][cols];
+
+        // i-k-j order so that the inner loop walks along rows of both arrays
+        for (int r = 1; r <= rows; r++) {
+            double[] resultRow = result[r - 1];
+            double[] leftRow = one.getRow(r);
+            for (int k = 1; k <= one.getCols(); k++) {
+                double factor = leftRow[k - 1];
+                if (factor == 0.0) {
+                    continue;
+                }
+                double[] rightRow = two.getRow(k);
+                for (int c = 0; c < cols; c++) {
+                    resultRow[c] += factor * rightRow[c];
+                }
+            }
+        }
+        return rows == cols ? new SquareMatrix(result) : new Matrix(result);
+    }
+
     /**
      * Multiply a given matrix by a scalar
      * @param mat    the matrix to be scaled
@@ -547,19 +633,27 @@ public class Matrix {
     }
 
     /**
-     * Moves all rows of all zeros to the bottom of this matrix
+     * Moves all rows of all zeros to the bottom of this matrix, keeping the other
+     * rows in order
+     * @param ws the workspace to borrow scratch storage from
      */
-    private void moveZerosToBottom() {
-        double[][] output = new double[this.rows][this.cols];
+    private void moveZerosToBottom(MatrixWorkspace ws) {
+        double[][] zeroRows = ws.rowBuffer(this.rows);
         int index = 0;
+        int zeros = 0;
         for (int i = 1; i <= this.rows; i++) {
-            if (!this.isAllZeros(i)) {
-                output[index] = this.getRow(i);
+            if (this.isAllZeros(i)) {
+                zeroRows[zeros] = this.getRow(i);
+                zeros++;
+            } else {
+                this.mat[index] = this.getRow(i);
                 index++;
             }
         }
-
-        this.setMatrix(output);
+        for (int i = 0; i < zeros; i++) {
+            this.mat[index + i] = zeroRows[i];
+            zeroRows[i] = null;
+        }
     }
 
     /**
@@ -582,14 +676,83 @@ public class Matrix {
      * Row reduces this matrix to its RREF form
      */
     public void reduceToRREF() {
-        this.setMatrix(getRREF(this).getMatrix());
+        this.reduceToRREF(MatrixWorkspace.local());
+    }
+
+    /**
+     * Row reduces this matrix to its RREF form in place, borrowing any scratch
+     * storage from the given workspace
+     * @param ws the workspace to borrow scratch storage from
+     */
+    public void reduceToRREF(MatrixWorkspace ws) {
+        this.reduceToEchelon(ws);
+
+        // create a leading 1 in each nonzero row
+        for (int i = 1; i <= this.getRows(); i++) {
+            double leadingEntry = this.getLeadingEntry(i);
+            if (leadingEntry != 0) {
+                this.scaleRow(i, 1 / leadingEntry);
+            }
+        }
+
+        int currentRow = this.getRows();
+
+        while (currentRow >= 1) {
+            if (this.isAllZeros(currentRow)) {
+                currentRow -= 1;
+                continue;
+            } else {
+                int leadingEntryColumn = this.getLeadingEntryColumn(currentRow);
+                for (int r = currentRow - 1; r >= 1; r--) {
+
+                    if (leadingEntryColumn != -1) { // if that row is not all zeros
+                        double factor = -this.getElement(r, leadingEntryColumn);
+                        this.addRows(currentRow, r, factor);
+                    }
+
+                }
+                currentRow -= 1;
+            }
+        }
+
+        this.moveZerosToBottom(ws);
     }
 
     /**
      * Row reduces this matrix to an echelon form
      */
     public void reduceToEchelon() {
-        this.setMatrix(createEchelonForm(this).getMatrix());
+        this.reduceToEchelon(MatrixWorkspace.local());
+    }
+
+    /**
+     * Row reduces this matrix to an echelon form in place, borrowing any scratch
+     * storage from the given workspace
+     * @param ws the workspace to borrow scratch storage from
+     */
+    public void reduceToEchelon(MatrixWorkspace ws) {
+        // Sort by the number of leading zeros in each row
+        this.sortByLeadingZeros(ws);
+
+        int currentRow = 1;
+
+        while (currentRow <= this.rows - 1) {
+            if (this.isAllZeros(currentRow)) {
+                currentRow += 1;
+                continue;
+            } else {
+                // Only the rows below change, so the leading entry stays put
+                int leadingEntryColumn = this.getLeadingEntryColumn(currentRow);
+                double leadingEntry = this.getLeadingEntry(currentRow);
+                for (int r = currentRow + 1; r <= this.getRows(); r++) {
+                    double factor = -this.getElement(r, leadingEntryColumn) / leadingEntry;
+                    this.addRows(currentRow, r, factor);
+                }
+                currentRow += 1;
+            }
+        }
+
+        this.moveZerosToBottom(ws);
     }
 
     /**
@@ -626,7 +789,8 @@ public class Matrix {
     public String toString() {
         String s = "";
         int charsPerEntry = this.getMaxEntryLength() + 3; // add 1 for the decimal point and 2 for the digits after it
-        for (double[] row : this.mat) {
+        for (int r = 1; r <= this.getRows(); r++) {
+            double[] row = this.getRow(r);
             s += "| ";
             for (double e : row) {
                 if (Math.abs(e) < DELTA) {
@@ -0,0 +1,440 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * This class runs the functions of {@code MatrixRunner} over many matrices
+ * without any interaction. It is started with
+ * <pre>
+ * java MatrixRunner --batch &lt;job file or directory&gt; [--out &lt;directory&gt;]
+ *         [--ops ECHELON,RREF,INVERSE,DETERMINANT] [--threads n] [--virtual]
+ * </pre>
+ * A job file holds any number of matrices. Each one is a line with its number
+ * of rows and columns followed by its entries, one row per line. Blank lines
+ * and lines starting with # are ignored. If a directory is given, every file in
+ * it is a job file.
+ * <p>
+ * Each matrix is a job, and jobs run in parallel on a fixed pool of
+ * {@code --threads} threads, or on virtual threads with at most
+ * {@code --threads} jobs running at once if {@code --virtual} is given. With
+ * the fixed pool, up to {@code --threads} more matrices are read ahead and
+ * queued so that no thread waits for the job file to be parsed. The results
+ * for each job file are written to a file of the same name with {@code .out}
+ * added, as each job finishes, so they are not necessarily in the order of the
+ * job file. The file is closed once its last job finishes, so only the files
+ * with jobs in flight are open at any time. A summary of throughput and latency
+ * is printed at the end. A malformed matrix ends the reading of its job file,
+ * and is reported in the summary as a file error rather than as a job, along
+ * with any results file that could not be written.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class MatrixBatchRunner {
+
+    /**
+     * The functions run on each matrix if none are specified
+     */
+    public final static String[] DEFAULT_OPERATIONS = { "ECHELON", "RREF", "INVERSE", "DETERMINANT" };
+
+    /**
+     * The directory results are written to if none is specified
+     */
+    public final static String DEFAULT_OUTPUT_DIRECTORY = "batch-output";
+
+    private final String[] operations;
+    private final Path outputDirectory;
+    private final int threads;
+    private final boolean virtual;
+
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger fileErrors = new AtomicInteger();
+    private long[] latencies = new long[1024];
+    private int jobs;
+
+    /**
+     * Constructs a batch runner
+     * @param operations      the functions to run on each matrix
+     * @param outputDirectory the directory the results are written to
+     * @param threads         the number of jobs that may run at once
+     * @param virtual         whether each job gets its own virtual thread rather
+     *                        than running on a fixed pool
+     */
+    public MatrixBatchRunner(String[] operations, Path outputDirectory, int threads, boolean virtual) {
+        assert threads >= 1 : "Must allow at least one thread";
+
+        this.operations = operations;
+        this.outputDirectory = outputDirectory;
+        this.threads = threads;
+        this.virtual = virtual;
+    }
+
+    /**
+     * Runs a batch from command line arguments, printing the summary or any usage
+     * errors
+     * @param args the arguments that followed {@code --batch}
+     * @return the exit status, which is 0 only if every job succeeded
+     */
+    public static int run(String[] args) {
+        String input = null;
+        String output = DEFAULT_OUTPUT_DIRECTORY;
+        String[] operations = DEFAULT_OPERATIONS;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean virtual = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                case "--out":
+                    output = args[++i];
+                    break;
+                case "--ops":
+                    operations = args[++i].toUpperCase().split(",");
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--virtual":
+                    virtual = true;
+                    break;
+                default:
+                    if (input != null || args[i].startsWith("--")) {
+                        return usage("Unexpected argument " + args[i]);
+                    }
+                    input = args[i];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            return usage("Invalid arguments");
+        }
+        if (input == null) {
+            return usage("No job file or directory given");
+        }
+        if (threads < 1) {
+            return usage("The number of threads must be at least 1");
+        }
+        for (String operation : operations) {
+            if (!Arrays.asList(DEFAULT_OPERATIONS).contains(operation)) {
+                return usage("Invalid operation " + operation);
+            }
+        }
+
+        MatrixBatchRunner runner = new MatrixBatchRunner(operations, Paths.get(output), threads, virtual);
+        try {
+            runner.runAll(Paths.get(input));
+        } catch (IOException e) {
+            System.err.println("Batch failed: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            System.err.println("Batch interrupted");
+            return 1;
+        }
+        return runner.getFailures() == 0 ? 0 : 1;
+    }
+
+    private static int usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: --batch <job file or directory> [--out <directory>]"
+                + " [--ops ECHELON,RREF,INVERSE,DETERMINANT] [--threads n] [--virtual]");
+        return 2;
+    }
+
+    /**
+     * Runs every job in a job file, or in every file of a directory, then prints
+     * the summary
+     * @param input a job file or a directory of job files
+     * @throws IOException          if a job file cannot be read or a result
+     *                              cannot be written
+     * @throws InterruptedException if interrupted while waiting for jobs
+     */
+    public void runAll(Path input) throws IOException, InterruptedException {
+        List<Path> jobFiles = new ArrayList<>();
+        if (Files.isDirectory(input)) {
+            try (Stream<Path> files = Files.list(input)) {
+                files.filter(Files::isRegularFile).sorted().forEach(jobFiles::add);
+            }
+        } else {
+            jobFiles.add(input);
+        }
+        Files.createDirectories(this.outputDirectory);
+
+        ExecutorService executor = this.virtual ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(this.threads);
+        // Matrices are read only as fast as they are processed, so a huge job
+        // file is never held in memory all at once. Virtual threads start as soon
+        // as they are submitted, so there the permits are what limits the running
+        // jobs to --threads. The fixed pool does that itself, and the extra
+        // permits keep one matrix queued for each thread
+        Semaphore inFlight = new Semaphore(this.virtual ? this.threads : this.threads * 2);
+        long start = System.nanoTime();
+
+        try {
+            for (Path jobFile : jobFiles) {
+                this.submitJobs(jobFile, executor, inFlight);
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        this.printSummary(System.nanoTime() - start);
+    }
+
+    /**
+     * Reads the matrices in a job file and submits a job for each. The results
+     * file is closed by whichever finishes last, the reading or the last job.
+     * @param jobFile  the job file
+     * @param executor runs the jobs
+     * @param inFlight limits the number of jobs waiting or running
+     * @throws IOException          if the job file cannot be read or its results
+     *                              file cannot be created
+     * @throws InterruptedException if interrupted while waiting for a job to
+     *                              finish
+     */
+    private void submitJobs(Path jobFile, ExecutorService executor, Semaphore inFlight)
+            throws IOException, InterruptedException {
+        Writer writer = Files.newBufferedWriter(this.outputDirectory.resolve(jobFile.getFileName() + ".out"));
+        // One for each job not yet finished, plus one for the reading
+        AtomicInteger pending = new AtomicInteger(1);
+
+        try (BufferedReader reader = Files.newBufferedReader(jobFile)) {
+            int index = 0;
+            while (true) {
+                Matrix mat;
+                try {
+                    mat = readMatrix(reader);
+                } catch (MatrixException e) {
+                    // Without a valid size there is no telling where the next matrix starts
+                    System.err.println(jobFile + ", job " + (index + 1) + ": " + e.getMessage());
+                    this.fileErrors.incrementAndGet();
+                    return;
+                }
+                if (mat == null) {
+                    return;
+                }
+
+                int job = ++index;
+                inFlight.acquire();
+                pending.incrementAndGet();
+                executor.execute(() -> {
+                    try {
+                        this.runJob(jobFile, job, mat, writer);
+                    } finally {
+                        this.finishJob(jobFile, writer, pending);
+                        inFlight.release();
+                    }
+                });
+            }
+        } finally {
+            this.finishJob(jobFile, writer, pending);
+        }
+    }
+
+    /**
+     * Counts down the work left for a job file, closing its results file when
+     * there is none
+     * @param jobFile the job file
+     * @param writer  where the results for this job file go
+     * @param pending the number of jobs not yet finished, plus one while the job
+     *                file is still being read
+     */
+    private void finishJob(Path jobFile, Writer writer, AtomicInteger pending) {
+        if (pending.decrementAndGet() > 0) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println(jobFile + ": could not write results: " + e.getMessage());
+            this.fileErrors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Performs one operation on a matrix, as the interactive menu does, except
+     * that determinants come from the LU pivots. Cofactor expansion takes O(n!)
+     * time, which a batch job cannot afford, while the menu keeps it because it
+     * gives exactly 0 for singular integer matrices rather than rounding noise.
+     * @param operation one of the operations accepted by {@code --ops}
+     * @param mat       the matrix to operate on
+     * @return the text to write for the result
+     */
+    private static String computeOperation(String operation, Matrix mat) {
+        if (operation.equals("DETERMINANT") && mat.getRows() == mat.getCols()) {
+            return Double.toString(new LUDecomposition((SquareMatrix) mat).getDeterminant());
+        }
+        return MatrixRunner.computeOperation(operation, mat);
+    }
+
+    /**
+     * Runs every operation on one matrix and writes the results
+     * @param jobFile the job file the matrix came from
+     * @param job     the position of the matrix in its job file, starting at 1
+     * @param mat     the matrix
+     * @param writer  where the results for this job file go
+     */
+    private void runJob(Path jobFile, int job, Matrix mat, Writer writer) {
+        long start = System.nanoTime();
+        StringBuilder result = new StringBuilder();
+        result.append("Job ").append(job).append(" (").append(mat.getRows()).append('x').append(mat.getCols())
+                .append(")\n");
+        boolean failed = false;
+        for (String operation : this.operations) {
+            result.append(operation).append(":\n");
+            try {
+                result.append(computeOperation(operation, mat)).append('\n');
+            } catch (RuntimeException e) {
+                result.append("Failed: ").append(e).append('\n');
+                failed = true;
+            }
+        }
+        result.append('\n');
+        this.recordLatency(System.nanoTime() - start);
+
+        try {
+            synchronized (writer) {
+                writer.write(result.toString());
+            }
+        } catch (IOException e) {
+            System.err.println(jobFile + ", job " + job + ": could not write result: " + e.getMessage());
+            failed = true;
+        }
+        if (failed) {
+            this.failures.incrementAndGet();
+        }
+    }
+
+    /**
+     * Reads the next matrix in a job file
+     * @param reader the job file, positioned between matrices
+     * @return the matrix, which is a {@code SquareMatrix} if rows = columns, or
+     *         null if the job file has no more matrices
+     * @throws IOException     if the job file cannot be read
+     * @throws MatrixException if the matrix is not written correctly
+     */
+    static Matrix readMatrix(BufferedReader reader) throws IOException {
+        String[] size = nextLine(reader);
+        if (size == null) {
+            return null;
+        }
+        int rows;
+        int cols;
+        try {
+            if (size.length != 2) {
+                throw new NumberFormatException();
+            }
+            rows = Integer.parseInt(size[0]);
+            cols = Integer.parseInt(size[1]);
+        } catch (NumberFormatException e) {
+            throw new MatrixException("Expected the number of rows and columns but found " + String.join(" ", size));
+        }
+        if (rows < 1 || cols < 1) {
+            throw new MatrixException(rows + "x" + cols + " is not a possible matrix");
+        }
+
+        // The size is not trusted, so each row is only allocated once it has been
+        // read and memory never runs ahead of the input
+        List<double[]> arr = new ArrayList<>();
+        for (int r = 0; r < rows; r++) {
+            String[] entries = nextLine(reader);
+            if (entries == null) {
+                throw new MatrixException("Expected " + rows + " rows but found " + r);
+            }
+            if (entries.length != cols) {
+                throw new MatrixException("Row " + (r + 1) + " has " + entries.length + " entries instead of " + cols);
+            }
+            double[] row = new double[cols];
+            try {
+                for (int c = 0; c < cols; c++) {
+                    row[c] = Double.parseDouble(entries[c]);
+                }
+            } catch (NumberFormatException e) {
+                throw new MatrixException("Row " + (r + 1) + " has an entry that is not a number");
+            }
+            arr.add(row);
+        }
+        double[][] output = arr.toArray(new double[rows][]);
+        return rows == cols ? new SquareMatrix(output) : new Matrix(output);
+    }
+
+    /**
+     * Reads the next line that is not blank or a comment
+     * @param reader the job file
+     * @return the tokens of the line, or null at the end of the file
+     * @throws IOException if the job file cannot be read
+     */
+    private static String[] nextLine(BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                return line.split("\\s+");
+            }
+        }
+        return null;
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        if (this.jobs == this.latencies.length) {
+            this.latencies = Arrays.copyOf(this.latencies, this.jobs * 2);
+        }
+        this.latencies[this.jobs++] = nanos;
+    }
+
+    /**
+     * Getter for the number of failures, which are the jobs that have failed plus
+     * the job files that could not be read to the end or whose results could not
+     * be written
+     * @return the number of failed jobs and job files
+     */
+    public int getFailures() {
+        return this.failures.get() + this.fileErrors.get();
+    }
+
+    /**
+     * Prints the number of jobs, the throughput and the percentiles of the time
+     * taken by each job
+     * @param wallNanos the time taken by the whole batch
+     */
+    private synchronized void printSummary(long wallNanos) {
+        long[] sorted = Arrays.copyOf(this.latencies, this.jobs);
+        Arrays.sort(sorted);
+        double seconds = wallNanos / 1e9;
+
+        // A matrix that could not be read never ran as a job, so it is reported apart
+        System.out.printf("Jobs: %d (%d failed)\n", this.jobs, this.failures.get());
+        if (this.fileErrors.get() > 0) {
+            System.out.printf("File errors: %d (malformed matrices or unwritable results)\n", this.fileErrors.get());
+        }
+        System.out.printf("Wall time: %.3f s\n", seconds);
+        System.out.printf("Throughput: %.1f jobs/s\n", this.jobs / seconds);
+        if (this.jobs > 0) {
+            System.out.printf("Latency (ms): p50 %.3f, p95 %.3f, p99 %.3f, max %.3f\n", percentile(sorted, 50),
+                    percentile(sorted, 95), percentile(sorted, 99), sorted[sorted.length - 1] / 1e6);
+        }
+    }
+
+    /**
+     * Finds a percentile by the nearest rank method
+     * @param sorted     latencies in nanoseconds, in increasing order
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in milliseconds
+     */
+    static double percentile(long[] sorted, double percentile) {
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1] / 1e6;
+    }
+
+}
@@ -1,3 +1,4 @@
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
 
@@ -15,21 +16,23 @@ public class MatrixRunner {
     private static Matrix mat;
 
     private static int collectData(String fieldName) {
-        System.out.printf("Enter the number of %s for your matrix: ", fieldName);
-
-        int data;
+        while (true) {
+            System.out.printf("Enter the number of %s for your matrix: ", fieldName);
 
-        try {
-            data = s.nextInt();
-        } catch (NoSuchElementException e) {
-            System.out.printf("The number of %s must be an integer greater than or equal to 1\n", fieldName);
-            return collectData(fieldName);
-        }
-        if (data<1) {
-            System.out.printf("The number of %s must be an integer greater than 1\n", fieldName);
-            return collectData(fieldName);
+            try {
+                int data = s.nextInt();
+                if (data >= 1) {
+                    return data;
+                }
+                System.out.printf("The number of %s must be an integer greater than 1\n", fieldName);
+            } catch (NoSuchElementException e) {
+                if (!s.hasNext()) {
+                    throw e; // the input has ended, so asking again would never finish
+                }
+                s.next(); // discard the invalid token before asking again
+                System.out.printf("The number of %s must be an integer greater than or equal to 1\n", fieldName);
+            }
         }
-        return data;
     }
 
     private static void collectMatrix(int rows, int cols, Matrix mat) {
@@ -42,35 +45,45 @@ public class MatrixRunner {
         }
     }
 
-    public static void performOperation(String function) {
+    /**
+     * Computes the result of one of the matrix functions, without printing it
+     * @param function one of DISPLAY, ECHELON, RREF, INVERSE or DETERMINANT
+     * @param mat      the matrix to operate on. Square matrices must be
+     *                 {@code SquareMatrix} instances
+     * @return the text to show for the result, or null if {@code function} is not
+     *         one of the functions above
+     */
+    static String computeOperation(String function, Matrix mat) {
         switch (function) {
         case "DISPLAY":
-            System.out.println(mat);
-            break;
+            return mat.toString();
         case "ECHELON":
-            System.out.println(Matrix.createEchelonForm(mat));
-            break;
+            return Matrix.createEchelonForm(mat).toString();
         case "RREF":
-            System.out.println(Matrix.getRREF(mat));
-            break;
+            return Matrix.getRREF(mat).toString();
         case "INVERSE":
             if (mat.getRows() != mat.getCols()) {
-                System.out.println("Cannot create an inverse of a non-square matrix");
+                return "Cannot create an inverse of a non-square matrix";
             } else {
-                if (((SquareMatrix) mat).getDeterminant() == 0) {
-                    System.out.println("No inverse exists for this matrix");
-                } else {
-                    System.out.println(SquareMatrix.getInverse((SquareMatrix) mat));
+                try {
+                    return SquareMatrix.getInverse((SquareMatrix) mat).toString();
+                } catch (MatrixException e) {
+                    return e.getMessage();
                 }
             }
-            break;
         case "DETERMINANT":
             if (mat.getRows() != mat.getCols()) {
-                System.out.println("Cannot calculate the determinant of a non-square matrix");
+                return "Cannot calculate the determinant of a non-square matrix";
             } else {
-                System.out.println(SquareMatrix.getDeterminant((SquareMatrix) mat));
+                return Double.toString(SquareMatrix.getDeterminant((SquareMatrix) mat));
             }
-            break;
+        default:
+            return null;
+        }
+    }
+
+    public static void performOperation(String function) {
+        switch (function) {
         case "NEW":
             System.out.println("\n\n");
             fullProcess();
@@ -80,7 +93,8 @@ public class MatrixRunner {
             System.exit(0);
             break; //won't reach here, but break anyway
         default:
-            System.out.println("Invalid operation");
+            String result = computeOperation(function, mat);
+            System.out.println(result == null ? "Invalid operation" : result);
         }
     }
 
@@ -105,6 +119,12 @@ public class MatrixRunner {
     }
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(MatrixBatchRunner.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            System.exit(MatrixServer.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
         fullProcess();
     }
 
@@ -0,0 +1,532 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is a small HTTP service for computing inverses and determinants.
+ * It is started with
+ * <pre>
+ * java MatrixRunner --serve &lt;port&gt; [--queue n] [--batch n] [--workers n]
+ * </pre>
+ * and listens on the loopback address only. The endpoints are
+ * <ul>
+ * <li>{@code POST /inverse}, whose response is the inverse</li>
+ * <li>{@code POST /determinant}, whose response is the determinant</li>
+ * <li>{@code GET /stats}, whose response is the request counts and the p50 and
+ * p99 latency of every answered request, and separately of the requests that
+ * were turned away or failed</li>
+ * </ul>
+ * A request body is one matrix in the format of a {@code MatrixBatchRunner} job
+ * file: its number of rows and columns, then one row per line. An inverse is
+ * returned in the same format.
+ * <p>
+ * Each connection is handled on its own virtual thread, which parses the
+ * matrix and places it on a bounded queue. Worker threads take everything that
+ * is waiting on the queue, group it by operation and dimension, and compute
+ * each group with one {@code BatchedLUDecomposition}, so concurrent requests of
+ * the same size share their work. When the queue is full, requests are turned
+ * away with 503 rather than left to wait without limit, and so is a request
+ * whose answer takes longer than {@value #RESPONSE_TIMEOUT_SECONDS} seconds.
+ * Request bodies larger than {@value #MAX_BODY_BYTES} bytes are turned away
+ * with 413.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class MatrixServer {
+
+    /**
+     * The number of requests that may wait to be computed if none is specified
+     */
+    public final static int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    /**
+     * The largest number of requests computed together if none is specified
+     */
+    public final static int DEFAULT_MAX_BATCH = 64;
+
+    /**
+     * The largest request body accepted, which is enough for a 500 x 500 matrix
+     * written at full precision. The body is read completely before it is
+     * parsed, so this bounds the memory each connection can take.
+     */
+    public final static int MAX_BODY_BYTES = 8 << 20;
+
+    /**
+     * The longest a connection waits for its answer once the request is queued
+     */
+    public final static long RESPONSE_TIMEOUT_SECONDS = 60;
+
+    /**
+     * The number of latencies of each kind kept for the percentiles in
+     * {@code /stats}
+     */
+    private final static int LATENCY_SAMPLES = 10000;
+
+    /**
+     * The number of connections that may wait to be accepted. Bursts of
+     * connections beyond this are reset by the operating system, so it is
+     * larger than the usual default.
+     */
+    private final static int BACKLOG = 1024;
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final BlockingQueue<Request> queue;
+    private final int maxBatch;
+    private final Thread[] workers;
+
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batched = new AtomicLong();
+    private final LatencyRing latencies = new LatencyRing();
+    private final LatencyRing errorLatencies = new LatencyRing();
+
+    /**
+     * A matrix waiting to be computed, and where its answer goes
+     */
+    private static class Request {
+        private final String operation;
+        private final SquareMatrix mat;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        private Request(String operation, SquareMatrix mat) {
+            this.operation = operation;
+            this.mat = mat;
+        }
+    }
+
+    /**
+     * The most recent latencies of one kind of response
+     */
+    private static class LatencyRing {
+        private final long[] samples = new long[LATENCY_SAMPLES];
+        private long count;
+
+        /**
+         * Keeps a latency, replacing the oldest once the ring is full
+         * @param nanos the time from receiving a request to sending its answer
+         */
+        private synchronized void record(long nanos) {
+            this.samples[(int) (this.count % LATENCY_SAMPLES)] = nanos;
+            this.count++;
+        }
+
+        /**
+         * @return the latencies kept, in increasing order
+         */
+        private synchronized long[] sorted() {
+            long[] output = Arrays.copyOf(this.samples, (int) Math.min(this.count, LATENCY_SAMPLES));
+            Arrays.sort(output);
+            return output;
+        }
+    }
+
+    /**
+     * Constructs a server with the default queue capacity, batch size and one
+     * worker per processor
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public MatrixServer(int port) throws IOException {
+        this(port, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_BATCH, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a server, which does not accept connections until it is started
+     * @param port          the port to listen on, or 0 for any free port
+     * @param queueCapacity the number of requests that may wait to be computed
+     * @param maxBatch      the largest number of requests computed together
+     * @param workers       the number of threads computing batches
+     * @throws IOException if the port cannot be bound
+     */
+    public MatrixServer(int port, int queueCapacity, int maxBatch, int workers) throws IOException {
+        assert queueCapacity >= 1 : "The queue must hold at least one request";
+        assert maxBatch >= 1 : "A batch must hold at least one request";
+        assert workers >= 1 : "Must have at least one worker";
+
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        this.handlers = Executors.newVirtualThreadPerTaskExecutor();
+        this.server.setExecutor(this.handlers);
+        this.server.createContext("/inverse",
+                this.timed(guarded(exchange -> this.handleCompute(exchange, "INVERSE"))));
+        this.server.createContext("/determinant",
+                this.timed(guarded(exchange -> this.handleCompute(exchange, "DETERMINANT"))));
+        this.server.createContext("/stats", guarded(this::handleStats));
+
+        this.workers = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            this.workers[i] = new Thread(this::work, "matrix-server-worker-" + (i + 1));
+            this.workers[i].setDaemon(true);
+        }
+    }
+
+    /**
+     * Runs a server from command line arguments until the process is killed
+     * @param args the arguments that followed {@code --serve}
+     * @return the exit status if the server could not be started
+     */
+    public static int run(String[] args) {
+        int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        int maxBatch = DEFAULT_MAX_BATCH;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int port;
+        try {
+            port = Integer.parseInt(args[0]);
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                case "--queue":
+                    queueCapacity = Integer.parseInt(args[++i]);
+                    break;
+                case "--batch":
+                    maxBatch = Integer.parseInt(args[++i]);
+                    break;
+                case "--workers":
+                    workers = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException();
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Usage: --serve <port> [--queue n] [--batch n] [--workers n]");
+            return 2;
+        }
+        if (port < 0 || queueCapacity < 1 || maxBatch < 1 || workers < 1) {
+            System.err.println("The port must not be negative, and the other values must be at least 1");
+            return 2;
+        }
+
+        try {
+            MatrixServer server = new MatrixServer(port, queueCapacity, maxBatch, workers);
+            server.start();
+            System.out.println("Listening on http://localhost:" + server.getPort());
+            Thread.currentThread().join();
+        } catch (IOException e) {
+            System.err.println("Could not start server: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            return 0;
+        }
+        return 0;
+    }
+
+    /**
+     * Starts accepting connections
+     */
+    public void start() {
+        for (Thread worker : this.workers) {
+            worker.start();
+        }
+        this.server.start();
+    }
+
+    /**
+     * Stops accepting connections and stops the workers. Requests that have not
+     * been computed yet are failed, and the threads handling connections finish
+     * once they have answered.
+     */
+    public void stop() {
+        this.server.stop(0);
+        for (Thread worker : this.workers) {
+            worker.interrupt();
+        }
+        List<Request> remaining = new ArrayList<>();
+        this.queue.drainTo(remaining);
+        for (Request request : remaining) {
+            request.result.completeExceptionally(new MatrixException("Server stopped"));
+        }
+        this.handlers.shutdown();
+    }
+
+    /**
+     * Getter for the port the server is bound to, which is useful when it was
+     * constructed with port 0
+     * @return the port
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Wraps a handler so that every exchange is answered and closed. Anything the
+     * handler throws, even an {@code Error}, becomes a 500 if no response has
+     * been sent yet, rather than a connection the client waits on forever.
+     * @param handler the handler to wrap
+     * @return the wrapped handler
+     */
+    private static HttpHandler guarded(HttpHandler handler) {
+        return exchange -> {
+            try {
+                handler.handle(exchange);
+            } catch (Throwable e) {
+                try {
+                    respond(exchange, 500, "Internal error: " + e);
+                } catch (IOException | RuntimeException ignored) {
+                    // The response was already started, or the client is gone
+                }
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    /**
+     * Wraps a handler so that the latency of every exchange is recorded, whatever
+     * its answer. Requests that were turned away, timed out or failed are kept
+     * apart from those answered with 200, so that overload shows in
+     * {@code /stats} instead of being left out of it.
+     * @param handler the handler to wrap, which must answer every exchange
+     * @return the wrapped handler
+     */
+    private HttpHandler timed(HttpHandler handler) {
+        return exchange -> {
+            long start = System.nanoTime();
+            try {
+                handler.handle(exchange);
+            } finally {
+                long nanos = System.nanoTime() - start;
+                this.latencies.record(nanos);
+                if (exchange.getResponseCode() != 200) {
+                    this.errorLatencies.record(nanos);
+                }
+            }
+        };
+    }
+
+    /**
+     * Parses a matrix, queues it and waits for the answer. Waiting only parks the
+     * virtual thread that handles this connection.
+     * @param exchange  the request and response
+     * @param operation INVERSE or DETERMINANT
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleCompute(HttpExchange exchange, String operation) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            respond(exchange, 405, "Use POST");
+            return;
+        }
+
+        // The declared length is checked first, but a chunked body has none, so
+        // the limit is also applied while reading
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            if (length != null && Long.parseLong(length.trim()) > MAX_BODY_BYTES) {
+                body = null;
+            } else {
+                body = in.readNBytes(MAX_BODY_BYTES + 1);
+            }
+        } catch (NumberFormatException e) {
+            respond(exchange, 400, "Invalid Content-Length");
+            return;
+        }
+        if (body == null || body.length > MAX_BODY_BYTES) {
+            respond(exchange, 413, "Request body is larger than " + MAX_BODY_BYTES + " bytes");
+            return;
+        }
+
+        Matrix mat;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8))) {
+            mat = MatrixBatchRunner.readMatrix(reader);
+        } catch (MatrixException e) {
+            respond(exchange, 400, e.getMessage());
+            return;
+        }
+        if (mat == null) {
+            respond(exchange, 400, "No matrix given");
+            return;
+        }
+        if (!(mat instanceof SquareMatrix)) {
+            respond(exchange, 400, "Matrix must be square");
+            return;
+        }
+
+        Request request = new Request(operation, (SquareMatrix) mat);
+        if (!this.queue.offer(request)) {
+            this.rejected.incrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, 503, "Server is busy");
+            return;
+        }
+
+        try {
+            String result = request.result.get(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            respond(exchange, 200, result);
+            this.served.incrementAndGet();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MatrixException) {
+                respond(exchange, 422, e.getCause().getMessage());
+            } else {
+                respond(exchange, 500, "Internal error: " + e.getCause());
+            }
+        } catch (TimeoutException e) {
+            // The worker may still finish it, but nobody is waiting any more
+            request.result.cancel(false);
+            this.rejected.incrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, 503, "Timed out waiting for the answer");
+        } catch (InterruptedException e) {
+            respond(exchange, 503, "Server stopped");
+        }
+    }
+
+    /**
+     * Reports the request counts and latency percentiles
+     * @param exchange the request and response
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleStats(HttpExchange exchange) throws IOException {
+        long[] sorted = this.latencies.sorted();
+        long[] errors = this.errorLatencies.sorted();
+        long batchCount = this.batches.get();
+
+        StringBuilder output = new StringBuilder();
+        output.append("served ").append(this.served.get()).append('\n');
+        output.append("rejected ").append(this.rejected.get()).append('\n');
+        output.append("queued ").append(this.queue.size()).append('\n');
+        output.append("batches ").append(batchCount).append('\n');
+        output.append(String.format("mean_batch %.2f\n", batchCount == 0 ? 0.0 : (double) this.batched.get() / batchCount));
+        if (sorted.length > 0) {
+            output.append(String.format("p50_ms %.3f\n", MatrixBatchRunner.percentile(sorted, 50)));
+            output.append(String.format("p99_ms %.3f\n", MatrixBatchRunner.percentile(sorted, 99)));
+        }
+        if (errors.length > 0) {
+            output.append(String.format("error_p50_ms %.3f\n", MatrixBatchRunner.percentile(errors, 50)));
+            output.append(String.format("error_p99_ms %.3f\n", MatrixBatchRunner.percentile(errors, 99)));
+        }
+        respond(exchange, 200, output.toString());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Takes whatever is waiting on the queue, up to the batch size, and computes
+     * it. Under light load a batch is a single request, so nothing waits for a
+     * batch to fill up. Whatever goes wrong, every request taken is answered
+     * before the next ones are taken, and the loop keeps running.
+     */
+    private void work() {
+        List<Request> taken = new ArrayList<>(this.maxBatch);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                taken.add(this.queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                this.queue.drainTo(taken, this.maxBatch - 1);
+
+                Map<String, List<Request>> groups = new HashMap<>();
+                for (Request request : taken) {
+                    groups.computeIfAbsent(request.operation + " " + request.mat.getN(), key -> new ArrayList<>())
+                            .add(request);
+                }
+                for (List<Request> group : groups.values()) {
+                    this.compute(group);
+                }
+            } catch (Throwable e) {
+                // Completing a request that already has its answer does nothing
+                for (Request request : taken) {
+                    request.result.completeExceptionally(e);
+                }
+            } finally {
+                taken.clear();
+            }
+        }
+    }
+
+    /**
+     * Computes a group of requests with the same operation and dimension in one
+     * batch. If anything is thrown, even an {@code Error} such as running out of
+     * memory on a large batch, every request in the group fails with it.
+     * @param group the requests
+     */
+    private void compute(List<Request> group) {
+        this.batches.incrementAndGet();
+        this.batched.addAndGet(group.size());
+        try {
+            SquareMatrix[] mats = new SquareMatrix[group.size()];
+            for (int i = 0; i < mats.length; i++) {
+                mats[i] = group.get(i).mat;
+            }
+            BatchedLUDecomposition lu = new BatchedLUDecomposition(mats);
+
+            if (group.get(0).operation.equals("DETERMINANT")) {
+                double[] determinants = lu.getDeterminants();
+                for (int i = 0; i < mats.length; i++) {
+                    group.get(i).result.complete(determinants[i] + "\n");
+                }
+            } else {
+                SquareMatrix[] inverses = lu.getInverses();
+                for (int i = 0; i < mats.length; i++) {
+                    if (inverses[i] == null) {
+                        group.get(i).result.completeExceptionally(
+                                LUDecomposition.notInvertible(lu.estimateConditionNumber(i)));
+                    } else {
+                        group.get(i).result.complete(format(inverses[i]));
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            for (Request request : group) {
+                request.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Writes a matrix at full precision, in the same format requests use
+     * @param mat the matrix
+     * @return its size followed by one row per line
+     */
+    private static String format(Matrix mat) {
+        StringBuilder output = new StringBuilder();
+        output.append(mat.getRows()).append(' ').append(mat.getCols()).append('\n');
+        for (int r = 1; r <= mat.getRows(); r++) {
+            double[] row = mat.getRow(r);
+            for (int c = 0; c < row.length; c++) {
+                if (c > 0) {
+                    output.append(' ');
+                }
+                output.append(row[c]);
+            }
+            output.append('\n');
+        }
+        return output.toString();
+    }
+
+}
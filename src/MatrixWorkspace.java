@@ -0,0 +1,176 @@
+import java.util.ArrayList;
+
+/**
+ * This class is a pool of scratch storage for the temporary arrays created
+ * while row reducing, taking minors and so on. Arrays that are returned to the
+ * pool with {@link #release(double[][])} are handed out again by
+ * {@link #borrow(int, int)} for the next request of the same shape, so repeated
+ * operations on matrices of one shape stop allocating once the pool is warm.
+ * The results of {@code Matrix.createEchelonForm}, {@code Matrix.getRREF} and
+ * {@code Matrix.getMinor} are stored in borrowed arrays too, and belong to the
+ * caller, who can hand them back with {@link #release(Matrix)}.
+ * <p>
+ * A workspace keeps at most a fixed number of arrays holding at most a fixed
+ * number of entries in total, so a pool cannot grow without bound.
+ * <p>
+ * A workspace is not thread safe. Each thread can use its own through
+ * {@link #local()}, or a workspace can be created and passed in explicitly.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class MatrixWorkspace {
+
+    /**
+     * The number of arrays a workspace keeps if none is specified
+     */
+    public final static int DEFAULT_CAPACITY = 64;
+
+    /**
+     * The number of entries a workspace keeps in total if none is specified,
+     * which is 32 MB of doubles
+     */
+    public final static long DEFAULT_MAX_ELEMENTS = 1 << 22;
+
+    private final static ThreadLocal<MatrixWorkspace> LOCAL = ThreadLocal.withInitial(MatrixWorkspace::new);
+
+    private final ArrayList<double[][]> free;
+    private final int capacity;
+    private final long maxElements;
+    private long elements;
+    private double[][] rowBuffer = new double[0][];
+    private int[] intBuffer = new int[0];
+
+    /**
+     * Constructs an empty workspace with the default capacity
+     */
+    public MatrixWorkspace() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty workspace
+     * @param capacity the largest number of released arrays to keep. Arrays
+     *                 released beyond this are left to the garbage collector.
+     */
+    public MatrixWorkspace(int capacity) {
+        this(capacity, DEFAULT_MAX_ELEMENTS);
+    }
+
+    /**
+     * Constructs an empty workspace
+     * @param capacity    the largest number of released arrays to keep
+     * @param maxElements the largest number of entries to keep in all of the
+     *                    released arrays together. Arrays released beyond either
+     *                    limit are left to the garbage collector.
+     */
+    public MatrixWorkspace(int capacity, long maxElements) {
+        assert capacity >= 0 : "Capacity cannot be negative";
+        assert maxElements >= 0 : "The number of entries cannot be negative";
+
+        this.capacity = capacity;
+        this.maxElements = maxElements;
+        this.free = new ArrayList<>(Math.min(capacity, DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Gets the workspace belonging to the current thread. It only saves
+     * allocations on a thread that performs many operations, such as one in a
+     * fixed pool. {@code MatrixBatchRunner} and {@code MatrixServer} run each job
+     * on a new virtual thread, whose workspace starts empty and is dropped with
+     * the thread, so there this gives no reuse; create a workspace and pass it in
+     * explicitly to reuse storage across the jobs of one thread.
+     * @return this thread's workspace
+     */
+    public static MatrixWorkspace local() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Borrows a 2D array of the given shape, reusing a released one if possible.
+     * The contents of a reused array are whatever was left in it.
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @return an array with {@code rows} rows of {@code cols} entries each
+     */
+    public double[][] borrow(int rows, int cols) {
+        for (int i = this.free.size() - 1; i >= 0; i--) {
+            double[][] arr = this.free.get(i);
+            if (arr.length == rows && arr[0].length == cols) {
+                // Move the last array into this slot so nothing has to shift
+                double[][] last = this.free.remove(this.free.size() - 1);
+                if (i < this.free.size()) {
+                    this.free.set(i, last);
+                }
+                this.elements -= (long) rows * cols;
+                return arr;
+            }
+        }
+        return new double[rows][cols];
+    }
+
+    /**
+     * Returns a borrowed array to the pool. It must not be used afterwards. An
+     * array with no rows holds no storage worth reusing, and its number of
+     * columns cannot be read back, so it is not kept.
+     * @param arr an array from {@link #borrow(int, int)}, or any rectangular
+     *            array that is no longer needed
+     */
+    public void release(double[][] arr) {
+        if (arr.length == 0 || this.free.size() >= this.capacity) {
+            return;
+        }
+        long size = (long) arr.length * arr[0].length;
+        if (this.elements + size <= this.maxElements) {
+            this.free.add(arr);
+            this.elements += size;
+        }
+    }
+
+    /**
+     * Returns the storage of a matrix to the pool, such as the result of
+     * {@code Matrix.getRREF(input, ws)}. Neither the matrix nor its array may be
+     * used afterwards. A structured matrix has no array of its own, so nothing is
+     * kept for one.
+     * @param mat a dense matrix that is no longer needed
+     */
+    public void release(Matrix mat) {
+        if (!(mat instanceof StructuredMatrix)) {
+            this.release(mat.getMatrix());
+        }
+    }
+
+    /**
+     * Gets the number of arrays held for reuse
+     * @return the number of released arrays in the pool
+     */
+    public int size() {
+        return this.free.size();
+    }
+
+    /**
+     * Gets an array for holding references to rows. It is shared by every caller
+     * of this workspace, so it is only valid until the next call.
+     * @param n the number of rows needed
+     * @return an array of at least {@code n} row references
+     */
+    double[][] rowBuffer(int n) {
+        if (this.rowBuffer.length < n) {
+            this.rowBuffer = new double[n][];
+        }
+        return this.rowBuffer;
+    }
+
+    /**
+     * Gets an array of ints for scratch work. It is shared by every caller of this
+     * workspace, so it is only valid until the next call.
+     * @param n the number of ints needed
+     * @return an array of at least {@code n} ints
+     */
+    int[] intBuffer(int n) {
+        if (this.intBuffer.length < n) {
+            this.intBuffer = new int[n];
+        }
+        return this.intBuffer;
+    }
+
+}
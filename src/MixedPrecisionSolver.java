@@ -0,0 +1,220 @@
+/**
+ * This class solves systems of equations Ax = b by factoring A in single
+ * precision and then recovering double precision accuracy with iterative
+ * refinement. The factorization, which is the O(n^3) part of the work, reads
+ * and writes half as many bytes as it would in double precision. Each
+ * refinement step computes the residual b - Ax in double precision against the
+ * original matrix and solves for a correction with the single precision
+ * factors, which only costs O(n^2).
+ * <p>
+ * Refinement converges as long as A is not too ill-conditioned for single
+ * precision (a condition number well below 10^7). If it does not converge, a
+ * {@code MatrixException} is thrown rather than returning an inaccurate answer.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class MixedPrecisionSolver {
+
+    /**
+     * The number of refinement steps after which the solver gives up, if none is
+     * specified
+     */
+    public final static int DEFAULT_MAX_ITERATIONS = 30;
+
+    /**
+     * The distance from 1.0f to the next larger float
+     */
+    final static float EPSILON = Math.ulp(1f);
+
+    private final SquareMatrix mat;
+    private final FloatMatrix lu;
+    private final int[] permutation;
+    private final int n;
+    private final int maxIterations;
+    private int lastIterations;
+
+    /**
+     * Factors the given matrix in single precision
+     * @param m the matrix of coefficients. It is not copied, and must not be
+     *          modified while this solver is in use
+     * @throws MatrixException if a negligible pivot shows the matrix to be
+     *                         singular in single precision
+     */
+    public MixedPrecisionSolver(SquareMatrix m) throws MatrixException {
+        this(m, DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * Factors the given matrix in single precision
+     * @param m             the matrix of coefficients. It is not copied, and must
+     *                      not be modified while this solver is in use
+     * @param maxIterations the number of refinement steps after which the solver
+     *                      gives up
+     * @throws MatrixException if a negligible pivot shows the matrix to be
+     *                         singular in single precision
+     */
+    public MixedPrecisionSolver(SquareMatrix m, int maxIterations) throws MatrixException {
+        assert maxIterations >= 1 : "Must allow at least one refinement step";
+
+        this.mat = m;
+        this.n = m.getN();
+        this.maxIterations = maxIterations;
+        this.lu = new FloatMatrix(m);
+        this.permutation = new int[this.n];
+        this.factor();
+    }
+
+    /**
+     * Performs LU factorization with partial pivoting in single precision. As in
+     * {@code LUDecomposition}, a pivot no larger than n * EPSILON times the
+     * largest entry cannot be told apart from rounding error, so the matrix is
+     * singular in single precision and refinement could never converge.
+     * @throws MatrixException if a pivot is negligible
+     */
+    private void factor() throws MatrixException {
+        float[][] a = this.lu.getMatrix();
+        float maxEntry = 0;
+        for (int i = 0; i < this.n; i++) {
+            this.permutation[i] = i;
+            for (float entry : a[i]) {
+                maxEntry = Math.max(maxEntry, Math.abs(entry));
+            }
+        }
+        float tolerance = this.n * EPSILON * maxEntry;
+
+        for (int k = 0; k < this.n; k++) {
+            int pivotRow = k;
+            for (int r = k + 1; r < this.n; r++) {
+                if (Math.abs(a[r][k]) > Math.abs(a[pivotRow][k])) {
+                    pivotRow = r;
+                }
+            }
+            if (pivotRow != k) {
+                this.lu.interchangeRows(k + 1, pivotRow + 1);
+                int temp = this.permutation[pivotRow];
+                this.permutation[pivotRow] = this.permutation[k];
+                this.permutation[k] = temp;
+            }
+
+            float[] pivotRowArr = a[k];
+            float pivot = pivotRowArr[k];
+            if (Math.abs(pivot) <= tolerance) {
+                throw new MatrixException("Matrix is singular in single precision");
+            }
+
+            for (int r = k + 1; r < this.n; r++) {
+                float[] row = a[r];
+                float factor = row[k] / pivot;
+                row[k] = factor;
+                if (factor == 0.0f) {
+                    continue;
+                }
+                for (int c = k + 1; c < this.n; c++) {
+                    row[c] -= factor * pivotRowArr[c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Solves Ax = b to double precision accuracy
+     * @param b the right hand side, which is not modified
+     * @return the solution x
+     * @throws MatrixException if iterative refinement does not converge
+     */
+    public double[] solve(double[] b) throws MatrixException {
+        assert b.length == this.n : "Right hand side must have " + this.n + " entries";
+
+        double[] x = this.solveFactored(b);
+        double[] residual = new double[this.n];
+        double previousCorrection = Double.POSITIVE_INFINITY;
+
+        for (int iteration = 1; iteration <= this.maxIterations; iteration++) {
+            // The residual is the only part that has to be done in double precision
+            for (int r = 1; r <= this.n; r++) {
+                double[] row = this.mat.getRow(r);
+                double sum = b[r - 1];
+                for (int c = 0; c < this.n; c++) {
+                    sum -= row[c] * x[c];
+                }
+                residual[r - 1] = sum;
+            }
+
+            double[] correction = this.solveFactored(residual);
+            double correctionNorm = 0;
+            double solutionNorm = 0;
+            for (int i = 0; i < this.n; i++) {
+                x[i] += correction[i];
+                correctionNorm = Math.max(correctionNorm, Math.abs(correction[i]));
+                solutionNorm = Math.max(solutionNorm, Math.abs(x[i]));
+            }
+
+            if (correctionNorm <= Matrix.DELTA * solutionNorm || correctionNorm == 0) {
+                this.lastIterations = iteration;
+                return x;
+            }
+            // Each step should at least halve the correction, otherwise it is diverging
+            if (correctionNorm > previousCorrection / 2) {
+                break;
+            }
+            previousCorrection = correctionNorm;
+        }
+
+        throw new MatrixException(
+                "Iterative refinement did not converge, the matrix is too ill-conditioned for single precision");
+    }
+
+    /**
+     * Solves Ax = b using only the single precision factors. The result has only
+     * single precision accuracy, but it is computed in double precision so that
+     * it can be refined.
+     * @param b the right hand side, which is not modified
+     * @return the approximate solution x
+     */
+    private double[] solveFactored(double[] b) {
+        float[][] a = this.lu.getMatrix();
+        double[] x = new double[this.n];
+        for (int i = 0; i < this.n; i++) {
+            x[i] = b[this.permutation[i]];
+        }
+
+        // Forward substitution with the unit lower triangle
+        for (int i = 0; i < this.n; i++) {
+            float[] row = a[i];
+            double sum = x[i];
+            for (int j = 0; j < i; j++) {
+                sum -= row[j] * x[j];
+            }
+            x[i] = sum;
+        }
+        // Back substitution with the upper triangle
+        for (int i = this.n - 1; i >= 0; i--) {
+            float[] row = a[i];
+            double sum = x[i];
+            for (int j = i + 1; j < this.n; j++) {
+                sum -= row[j] * x[j];
+            }
+            x[i] = sum / row[i];
+        }
+        return x;
+    }
+
+    /**
+     * Getter for the number of refinement steps used by the most recent call to
+     * {@link #solve(double[])}
+     * @return the number of refinement steps
+     */
+    public int getLastIterations() {
+        return this.lastIterations;
+    }
+
+    /**
+     * Gets the single precision factors. The unit lower triangle L is stored below
+     * the diagonal and the upper triangle U on and above it.
+     * @return the factored matrix
+     */
+    public FloatMatrix getFactors() {
+        return this.lu;
+    }
+
+}
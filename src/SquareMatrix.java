@@ -28,6 +28,16 @@ public class SquareMatrix extends Matrix {
         super(n, n);
     }
 
+    /**
+     * Constructs a square matrix of the given dimension backed by the given array,
+     * which may be null for subclasses that store their entries in some other way
+     * @param n      the number of rows and columns for this matrix
+     * @param matrix an n by n 2D array, or null
+     */
+    protected SquareMatrix(int n, double[][] matrix) {
+        super(n, n, matrix);
+    }
+
     /**
      * If no size is specified, construct a zero matrix of size 1
      */
@@ -54,38 +64,22 @@ public class SquareMatrix extends Matrix {
     }
 
     /**
-     * Construct the inverse of the given matrix
+     * Construct the inverse of the given matrix from a single LU factorization.
+     * Whether the inverse exists is decided by the pivots of that factorization,
+     * relative to the size of the entries, so scaling a matrix does not change
+     * the answer.
      * @param m a {@code SquareMatrix} whose inverse is to be determined
      * @return the inverse of {@code m}
-     * @throws MatrixException if the inverse doesn't exist
+     * @throws MatrixException if the inverse doesn't exist, or {@code m} is so
+     *                         badly conditioned that no digit of it would be
+     *                         correct. The message reports the estimated
+     *                         condition number.
      */
     public static SquareMatrix getInverse(SquareMatrix m) throws MatrixException {
-        if (Math.abs(m.getDeterminant()) < 0.00001) {
-            throw new MatrixException("Matrix is not invertible");
-        }
-
-        Matrix augment = new Matrix(m.getN(), m.getN() * 2);
-        SquareMatrix ident = SquareMatrix.getIdentity(m.getN());
-
-        for (int r = 1; r <= m.getN(); r++) {
-            for (int c = 1; c <= m.getN(); c++) {
-                augment.setElement(r, c, m.getElement(r, c));
-            }
-            for (int c = m.getN() + 1; c <= m.getN() * 2; c++) {
-                augment.setElement(r, c, ident.getElement(r, c - m.getN()));
-            }
-        }
-
-        Matrix rowReduced = Matrix.getRREF(augment);
-
-        SquareMatrix output = new SquareMatrix(m.getN());
-        for (int r = 1; r <= m.getN(); r++) {
-            for (int c = m.getN() + 1; c <= m.getN() * 2; c++) {
-                output.setElement(r, c - m.getN(), rowReduced.getElement(r, c));
-            }
+        if (m instanceof StructuredMatrix) {
+            return ((StructuredMatrix) m).getInverse();
         }
-
-        return output;
+        return new LUDecomposition(m).getInverse();
     }
 
     /**
@@ -102,6 +96,9 @@ public class SquareMatrix extends Matrix {
      * @return the determinant of {@code mat}
      */
     public static double getDeterminant(SquareMatrix mat) {
+        if (mat instanceof StructuredMatrix) {
+            return mat.getDeterminant();
+        }
         // Special case where n=1:
         if (mat.getN() == 1) {
             return mat.getElement(1, 1);
@@ -118,9 +115,14 @@ public class SquareMatrix extends Matrix {
             return (mat.getElement(1, 1) * mat.getElement(2, 2)) - (mat.getElement(2, 1) * mat.getElement(1, 2));
         } // base case
         else {
-            int sum = 0;
+            // The minors are only needed until their determinant is known, so their
+            // storage is borrowed and handed back for the next one of the same size
+            MatrixWorkspace ws = MatrixWorkspace.local();
+            double sum = 0;
             for (int i = 1; i <= mat.getN(); i++) {
-                sum += Math.pow(-1, i - 1) * mat.getElement(1, i) * getDeterminant((SquareMatrix) getMinor(1, i, mat));
+                SquareMatrix minor = (SquareMatrix) getMinor(1, i, mat, ws);
+                sum += Math.pow(-1, i - 1) * mat.getElement(1, i) * getDeterminant(minor);
+                ws.release(minor);
             }
             return sum;
         }
@@ -0,0 +1,509 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class multiplies square matrices with the Winograd variant of Strassen's
+ * algorithm, which uses 7 half-size products and 15 additions per level of
+ * recursion. Once a sub-problem is no larger than the crossover size, the
+ * classical algorithm is used instead. The workspace for every level of the
+ * recursion is allocated the first time a given size is multiplied and then
+ * reused for later products of the same size, until {@link #release()} is
+ * called. The upper levels of the recursion run their 7 sub-products in
+ * parallel on a {@code ForkJoinPool}.
+ * <p>
+ * The operands are copied into arrays padded to a size m that the recursion
+ * can halve evenly, which is at most a few percent above n. Together with the
+ * product these take 3 m^2 doubles. A sequential level of the recursion adds
+ * each half-size product into the result as soon as it is computed, so it only
+ * needs 3 blocks of (m/2)^2, and the whole sequential recursion needs about
+ * m^2. A parallel level has to keep its 7 sub-products and their operands
+ * apart, which takes 11 blocks plus a separate workspace below each of the 7.
+ * With the default single parallel level the total is about 7.5 m^2 doubles,
+ * or 1 GB for n = 4096, and with none it is about 4 m^2.
+ * <p>
+ * Strassen-type algorithms are not as accurate as the classical algorithm, so
+ * {@link #getErrorBound(SquareMatrix, SquareMatrix)} and
+ * {@link #getClassicalErrorBound(SquareMatrix, SquareMatrix)} report the
+ * forward error bounds of both methods for a given product.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class StrassenMultiplier {
+
+    /**
+     * The crossover size used if none is specified
+     */
+    public final static int DEFAULT_CROSSOVER = 128;
+
+    /**
+     * The number of recursion levels that run in parallel if none is specified.
+     * One level already gives 7 tasks, and each further level needs 7 separate
+     * workspaces below it instead of one shared one.
+     */
+    public final static int DEFAULT_PARALLEL_DEPTH = 1;
+
+    /**
+     * The unit roundoff for doubles
+     */
+    private final static double UNIT_ROUNDOFF = Math.ulp(1.0) / 2;
+
+    private final int crossover;
+    private final int parallelDepth;
+    private final ForkJoinPool pool;
+
+    // The workspace is kept for the most recently used size
+    private int n = -1;
+    private int paddedSize;
+    private double[] paddedOne;
+    private double[] paddedTwo;
+    private double[] paddedResult;
+    private Workspace workspace;
+
+    /**
+     * Constructs a multiplier with the default crossover that runs on the common
+     * {@code ForkJoinPool}
+     */
+    public StrassenMultiplier() {
+        this(DEFAULT_CROSSOVER);
+    }
+
+    /**
+     * Constructs a multiplier with the given crossover that runs on the common
+     * {@code ForkJoinPool}
+     * @param crossover sub-problems of this size or smaller use the classical
+     *                  algorithm
+     */
+    public StrassenMultiplier(int crossover) {
+        this(crossover, DEFAULT_PARALLEL_DEPTH, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a multiplier
+     * @param crossover     sub-problems of this size or smaller use the classical
+     *                      algorithm
+     * @param parallelDepth the number of recursion levels whose sub-products run
+     *                      in parallel. Each parallel level needs 7 separate
+     *                      workspaces below it, so this should stay small
+     * @param pool          the pool that the parallel sub-products run on
+     */
+    public StrassenMultiplier(int crossover, int parallelDepth, ForkJoinPool pool) {
+        assert crossover >= 1 : "Crossover must be at least 1";
+        assert parallelDepth >= 0 : "Parallel depth cannot be negative";
+
+        this.crossover = crossover;
+        this.parallelDepth = parallelDepth;
+        this.pool = pool;
+    }
+
+    /**
+     * Getter for the crossover size
+     * @return the largest size that is multiplied with the classical algorithm
+     */
+    public int getCrossover() {
+        return this.crossover;
+    }
+
+    /**
+     * Frees the padded operands and the workspace. The next product allocates
+     * them again, so this is for a multiplier that is kept but will not be used
+     * for a while.
+     */
+    public synchronized void release() {
+        this.paddedOne = null;
+        this.paddedTwo = null;
+        this.paddedResult = null;
+        this.workspace = null;
+        this.n = -1;
+    }
+
+    /**
+     * Multiplies two square matrices of the same dimension. Calls on the same
+     * multiplier are serialized because they share the workspace, which is kept
+     * for the next product of the same size.
+     * @param one the left factor
+     * @param two the right factor
+     * @return the product of {@code one} and {@code two}
+     */
+    public synchronized SquareMatrix multiply(SquareMatrix one, SquareMatrix two) {
+        assert one.getN() == two.getN() : "Matrices must have the same dimension to multiply them";
+
+        int size = one.getN();
+        if (size <= this.crossover) {
+            return (SquareMatrix) Matrix.multiply(one, two);
+        }
+
+        this.prepare(size);
+        int m = this.paddedSize;
+
+        // Only the top left n x n block is ever written, so the padding stays zero
+        for (int r = 0; r < size; r++) {
+            System.arraycopy(one.getRow(r + 1), 0, this.paddedOne, r * m, size);
+            System.arraycopy(two.getRow(r + 1), 0, this.paddedTwo, r * m, size);
+        }
+
+        this.pool.invoke(new Product(this.paddedOne, 0, m, this.paddedTwo, 0, m, this.paddedResult, 0, m, m,
+                this.workspace));
+
+        double[][] result = new double[size][size];
+        for (int r = 0; r < size; r++) {
+            System.arraycopy(this.paddedResult, r * m, result[r], 0, size);
+        }
+        return new SquareMatrix(result);
+    }
+
+    /**
+     * Bounds the largest absolute error in any entry of the product of
+     * {@code one} and {@code two} computed by this multiplier. This is the bound
+     * from Higham, <i>Accuracy and Stability of Numerical Algorithms</i>, Theorem
+     * 23.4, ignoring terms of order u^2.
+     * @param one the left factor
+     * @param two the right factor
+     * @return the forward error bound for {@link #multiply}
+     */
+    public double getErrorBound(SquareMatrix one, SquareMatrix two) {
+        int size = one.getN();
+        if (size <= this.crossover) {
+            return getClassicalErrorBound(one, two);
+        }
+
+        int levels = levelsFor(size, this.crossover);
+        int leaf = leafSizeFor(size, this.crossover);
+        int m = leaf << levels;
+        double growth = Math.pow(18, levels); // (m / leaf)^(log2 18)
+        double coefficient = growth * ((double) leaf * leaf + 6.0 * leaf) - 6.0 * m;
+        return coefficient * UNIT_ROUNDOFF * maxAbs(one) * maxAbs(two);
+    }
+
+    /**
+     * Bounds the largest absolute error in any entry of the product of
+     * {@code one} and {@code two} computed by the classical algorithm
+     * @param one the left factor
+     * @param two the right factor
+     * @return the forward error bound for {@link Matrix#multiply(Matrix, Matrix)}
+     */
+    public static double getClassicalErrorBound(SquareMatrix one, SquareMatrix two) {
+        double size = one.getN();
+        return size * size * UNIT_ROUNDOFF * maxAbs(one) * maxAbs(two);
+    }
+
+    /**
+     * Finds the largest absolute value among the entries of a matrix
+     * @param mat the matrix to search
+     * @return the largest absolute value in {@code mat}
+     */
+    private static double maxAbs(Matrix mat) {
+        double max = 0;
+        for (int r = 1; r <= mat.getRows(); r++) {
+            for (double d : mat.getRow(r)) {
+                max = Math.max(max, Math.abs(d));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Determines how many times a matrix of the given size is halved before the
+     * classical algorithm takes over
+     * @param size      the dimension of the product
+     * @param crossover the crossover size
+     * @return the number of Strassen levels
+     */
+    private static int levelsFor(int size, int crossover) {
+        int levels = 0;
+        while (size > crossover) {
+            size = (size + 1) / 2;
+            levels++;
+        }
+        return levels;
+    }
+
+    /**
+     * Determines the size of the sub-problems that reach the classical algorithm
+     * @param size      the dimension of the product
+     * @param crossover the crossover size
+     * @return the leaf size, which is at most {@code crossover}
+     */
+    private static int leafSizeFor(int size, int crossover) {
+        while (size > crossover) {
+            size = (size + 1) / 2;
+        }
+        return size;
+    }
+
+    /**
+     * Allocates the padded operands and the recursion workspace for products of
+     * the given size, unless they already exist
+     * @param size the dimension of the product
+     */
+    private void prepare(int size) {
+        if (size == this.n) {
+            return;
+        }
+        int levels = levelsFor(size, this.crossover);
+        int m = leafSizeFor(size, this.crossover) << levels;
+
+        this.paddedOne = new double[m * m];
+        this.paddedTwo = new double[m * m];
+        this.paddedResult = new double[m * m];
+        this.workspace = new Workspace(m, this.crossover, this.parallelDepth);
+        this.paddedSize = m;
+        this.n = size;
+    }
+
+    /**
+     * Scratch storage for one level of the recursion, as h x h blocks. A
+     * sequential level has one block each for a sum of quadrants of A, a sum of
+     * quadrants of B and a product, and a single child shared by its 7
+     * sub-products. A parallel level has all 4 sums of each operand, 3 products
+     * that do not go straight into the result, and a separate child for each
+     * sub-product. At the leaves, the operands are packed into contiguous rows
+     * before the classical product, which lets the JIT vectorize the inner loop.
+     */
+    private static final class Workspace {
+        final double[][] s;
+        final double[][] t;
+        final double[][] p;
+        final Workspace[] children;
+        final boolean parallel;
+        final double[][] packedOne;
+        final double[][] packedTwo;
+        final double[] packedRow;
+
+        private Workspace(int size, int crossover, int parallelLevels) {
+            this.parallel = parallelLevels > 0 && size > crossover;
+            if (size <= crossover) {
+                this.s = this.t = this.p = null;
+                this.children = null;
+                this.packedOne = new double[size][size];
+                this.packedTwo = new double[size][size];
+                this.packedRow = new double[size];
+                return;
+            }
+            this.packedOne = this.packedTwo = null;
+            this.packedRow = null;
+
+            int h = size / 2;
+            if (this.parallel) {
+                this.s = new double[4][h * h];
+                this.t = new double[4][h * h];
+                this.p = new double[3][h * h];
+                this.children = new Workspace[7];
+                for (int i = 0; i < 7; i++) {
+                    this.children[i] = new Workspace(h, crossover, parallelLevels - 1);
+                }
+            } else {
+                this.s = new double[1][h * h];
+                this.t = new double[1][h * h];
+                this.p = new double[1][h * h];
+                Workspace shared = new Workspace(h, crossover, 0);
+                this.children = new Workspace[] { shared, shared, shared, shared, shared, shared, shared };
+            }
+        }
+    }
+
+    /**
+     * Computes C = A * B for size x size blocks stored in row-major arrays with the
+     * given offsets and strides. C is overwritten.
+     */
+    private final class Product extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double[] a, b, c;
+        private final int aOff, aStride, bOff, bStride, cOff, cStride, size;
+        // Tasks are never serialized, so the workspace does not need to be
+        private final transient Workspace ws;
+
+        Product(double[] a, int aOff, int aStride, double[] b, int bOff, int bStride, double[] c, int cOff,
+                int cStride, int size, Workspace ws) {
+            this.a = a;
+            this.aOff = aOff;
+            this.aStride = aStride;
+            this.b = b;
+            this.bOff = bOff;
+            this.bStride = bStride;
+            this.c = c;
+            this.cOff = cOff;
+            this.cStride = cStride;
+            this.size = size;
+            this.ws = ws;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.size <= StrassenMultiplier.this.crossover) {
+                classical(this.a, this.aOff, this.aStride, this.b, this.bOff, this.bStride, this.c, this.cOff,
+                        this.cStride, this.size, this.ws);
+            } else if (this.ws.parallel) {
+                this.computeParallel();
+            } else {
+                this.computeSequential();
+            }
+        }
+
+        /**
+         * Computes the 7 sub-products one at a time, adding each into the
+         * quadrants of C that use it before the next overwrites the same block.
+         * The sums of quadrants are built in place from one another.
+         */
+        private void computeSequential() {
+            int h = this.size / 2;
+            double[] a = this.a, b = this.b, c = this.c;
+            int a11 = this.aOff, a12 = a11 + h, a21 = a11 + h * this.aStride, a22 = a21 + h;
+            int b11 = this.bOff, b12 = b11 + h, b21 = b11 + h * this.bStride, b22 = b21 + h;
+            int c11 = this.cOff, c12 = c11 + h, c21 = c11 + h * this.cStride, c22 = c21 + h;
+            int as = this.aStride, bs = this.bStride, cs = this.cStride;
+            double[] s = this.ws.s[0], t = this.ws.t[0], p = this.ws.p[0];
+            Workspace child = this.ws.children[0];
+
+            // P1 = A11 * B11 is part of every quadrant
+            new Product(a, a11, as, b, b11, bs, c, c11, cs, h, child).compute();
+            copy(c, c11, cs, c, c12, cs, h);
+            copy(c, c11, cs, c, c21, cs, h);
+            copy(c, c11, cs, c, c22, cs, h);
+
+            // P2 = A12 * B21
+            new Product(a, a12, as, b, b21, bs, p, 0, h, h, child).compute();
+            combine(c, c11, cs, 1, p, 0, h, c, c11, cs, h);
+
+            // P5 = S1 * T1, where S1 = A21 + A22 and T1 = B12 - B11
+            combine(a, a21, as, 1, a, a22, as, s, 0, h, h);
+            combine(b, b12, bs, -1, b, b11, bs, t, 0, h, h);
+            new Product(s, 0, h, t, 0, h, p, 0, h, h, child).compute();
+            combine(c, c12, cs, 1, p, 0, h, c, c12, cs, h);
+            combine(c, c22, cs, 1, p, 0, h, c, c22, cs, h);
+
+            // P6 = S2 * T2, where S2 = S1 - A11 and T2 = B22 - T1
+            combine(s, 0, h, -1, a, a11, as, s, 0, h, h);
+            combine(b, b22, bs, -1, t, 0, h, t, 0, h, h);
+            new Product(s, 0, h, t, 0, h, p, 0, h, h, child).compute();
+            combine(c, c12, cs, 1, p, 0, h, c, c12, cs, h);
+            combine(c, c21, cs, 1, p, 0, h, c, c21, cs, h);
+            combine(c, c22, cs, 1, p, 0, h, c, c22, cs, h);
+
+            // P3 = S4 * B22, where S4 = A12 - S2
+            combine(a, a12, as, -1, s, 0, h, s, 0, h, h);
+            new Product(s, 0, h, b, b22, bs, p, 0, h, h, child).compute();
+            combine(c, c12, cs, 1, p, 0, h, c, c12, cs, h);
+
+            // P4 = A22 * T4, where T4 = T2 - B21
+            combine(t, 0, h, -1, b, b21, bs, t, 0, h, h);
+            new Product(a, a22, as, t, 0, h, p, 0, h, h, child).compute();
+            combine(c, c21, cs, -1, p, 0, h, c, c21, cs, h);
+
+            // P7 = S3 * T3, where S3 = A11 - A21 and T3 = B22 - B12
+            combine(a, a11, as, -1, a, a21, as, s, 0, h, h);
+            combine(b, b22, bs, -1, b, b12, bs, t, 0, h, h);
+            new Product(s, 0, h, t, 0, h, p, 0, h, h, child).compute();
+            combine(c, c21, cs, 1, p, 0, h, c, c21, cs, h);
+            combine(c, c22, cs, 1, p, 0, h, c, c22, cs, h);
+        }
+
+        /**
+         * Computes the 7 sub-products at once. Four of them are written straight
+         * into the quadrants of C and the other three into the workspace.
+         */
+        private void computeParallel() {
+            int h = this.size / 2;
+            double[] a = this.a, b = this.b, c = this.c;
+            int a11 = this.aOff, a12 = a11 + h, a21 = a11 + h * this.aStride, a22 = a21 + h;
+            int b11 = this.bOff, b12 = b11 + h, b21 = b11 + h * this.bStride, b22 = b21 + h;
+            int c11 = this.cOff, c12 = c11 + h, c21 = c11 + h * this.cStride, c22 = c21 + h;
+            int as = this.aStride, bs = this.bStride, cs = this.cStride;
+            double[][] s = this.ws.s, t = this.ws.t, p = this.ws.p;
+
+            // S1 = A21 + A22, S2 = S1 - A11, S3 = A11 - A21, S4 = A12 - S2
+            combine(a, a21, as, 1, a, a22, as, s[0], 0, h, h);
+            combine(s[0], 0, h, -1, a, a11, as, s[1], 0, h, h);
+            combine(a, a11, as, -1, a, a21, as, s[2], 0, h, h);
+            combine(a, a12, as, -1, s[1], 0, h, s[3], 0, h, h);
+            // T1 = B12 - B11, T2 = B22 - T1, T3 = B22 - B12, T4 = T2 - B21
+            combine(b, b12, bs, -1, b, b11, bs, t[0], 0, h, h);
+            combine(b, b22, bs, -1, t[0], 0, h, t[1], 0, h, h);
+            combine(b, b22, bs, -1, b, b12, bs, t[2], 0, h, h);
+            combine(t[1], 0, h, -1, b, b21, bs, t[3], 0, h, h);
+
+            Workspace[] ch = this.ws.children;
+            ForkJoinTask.invokeAll(
+                    new Product(a, a11, as, b, b11, bs, p[0], 0, h, h, ch[0]), // P1 = A11 * B11
+                    new Product(a, a12, as, b, b21, bs, c, c11, cs, h, ch[1]), // P2 = A12 * B21
+                    new Product(s[3], 0, h, b, b22, bs, c, c12, cs, h, ch[2]), // P3 = S4 * B22
+                    new Product(a, a22, as, t[3], 0, h, c, c21, cs, h, ch[3]), // P4 = A22 * T4
+                    new Product(s[0], 0, h, t[0], 0, h, c, c22, cs, h, ch[4]), // P5 = S1 * T1
+                    new Product(s[1], 0, h, t[1], 0, h, p[1], 0, h, h, ch[5]), // P6 = S2 * T2
+                    new Product(s[2], 0, h, t[2], 0, h, p[2], 0, h, h, ch[6])); // P7 = S3 * T3
+
+            // U2 = P1 + P6 is kept in P6 and U3 = U2 + P7 in P7. C12 uses P5
+            // before C22 is overwritten
+            combine(c, c11, cs, 1, p[0], 0, h, c, c11, cs, h); // C11 = P2 + P1
+            combine(p[0], 0, h, 1, p[1], 0, h, p[1], 0, h, h);
+            combine(p[1], 0, h, 1, p[2], 0, h, p[2], 0, h, h);
+            combine(c, c12, cs, 1, p[1], 0, h, c, c12, cs, h);
+            combine(c, c12, cs, 1, c, c22, cs, c, c12, cs, h); // C12 = P3 + U2 + P5
+            combine(p[2], 0, h, -1, c, c21, cs, c, c21, cs, h); // C21 = U3 - P4
+            combine(p[2], 0, h, 1, c, c22, cs, c, c22, cs, h); // C22 = U3 + P5
+        }
+    }
+
+    /**
+     * Copies an h x h block
+     */
+    private static void copy(double[] src, int sOff, int sStride, double[] dst, int dOff, int dStride, int h) {
+        for (int r = 0; r < h; r++) {
+            System.arraycopy(src, sOff + r * sStride, dst, dOff + r * dStride, h);
+        }
+    }
+
+    /**
+     * Computes dst = x + sign * y for h x h blocks
+     */
+    private static void combine(double[] x, int xOff, int xStride, int sign, double[] y, int yOff, int yStride,
+            double[] dst, int dOff, int dStride, int h) {
+        for (int r = 0; r < h; r++) {
+            int xi = xOff + r * xStride, yi = yOff + r * yStride, di = dOff + r * dStride;
+            if (sign > 0) {
+                for (int c = 0; c < h; c++) {
+                    dst[di + c] = x[xi + c] + y[yi + c];
+                }
+            } else {
+                for (int c = 0; c < h; c++) {
+                    dst[di + c] = x[xi + c] - y[yi + c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes C = A * B for size x size blocks with the classical algorithm,
+     * using the packing buffers of a leaf workspace
+     */
+    private static void classical(double[] a, int aOff, int aStride, double[] b, int bOff, int bStride, double[] c,
+            int cOff, int cStride, int size, Workspace leaf) {
+        double[][] one = leaf.packedOne;
+        double[][] two = leaf.packedTwo;
+        double[] row = leaf.packedRow;
+        for (int r = 0; r < size; r++) {
+            System.arraycopy(a, aOff + r * aStride, one[r], 0, size);
+            System.arraycopy(b, bOff + r * bStride, two[r], 0, size);
+        }
+
+        for (int r = 0; r < size; r++) {
+            Arrays.fill(row, 0);
+            double[] oneRow = one[r];
+            for (int k = 0; k < size; k++) {
+                double factor = oneRow[k];
+                if (factor == 0.0) {
+                    continue;
+                }
+                double[] twoRow = two[k];
+                for (int col = 0; col < size; col++) {
+                    row[col] += factor * twoRow[col];
+                }
+            }
+            System.arraycopy(row, 0, c, cOff + r * cStride, size);
+        }
+    }
+
+}
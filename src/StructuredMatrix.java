@@ -0,0 +1,473 @@
+import java.util.Arrays;
+
+/**
+ * This class is the base of square matrices that are known to be zero outside
+ * some pattern, such as a band around the diagonal. Only the entries inside the
+ * pattern are stored, so a structured matrix can be far larger than a dense
+ * one, and solving, multiplying and taking determinants only visit those
+ * entries. {@code SquareMatrix.getDeterminant}, {@code SquareMatrix.getInverse}
+ * and {@code Matrix.multiply} use these algorithms automatically when given a
+ * structured matrix.
+ * <p>
+ * There is no backing array, so {@link #getMatrix()} and {@link #getRow(int)}
+ * return dense copies, and writing to them does not change the matrix. Row
+ * operations would not keep the structure, so they throw a
+ * {@code MatrixException}; {@link #toSquareMatrix()} gives a dense copy that
+ * allows them.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public abstract class StructuredMatrix extends SquareMatrix {
+
+    /**
+     * Constructs a structured matrix of the given dimension
+     * @param n the number of rows and columns for this matrix
+     */
+    protected StructuredMatrix(int n) {
+        super(n, null);
+        assert n >= 1 : n + " rows is not possible";
+    }
+
+    /**
+     * Getter for the element in a particular row and column, which is zero if it
+     * is outside the structure
+     * @param r the row of the desired element. {@code 1 <= r <= this.getN()}
+     * @param c the column of the desired element. {@code 1 <= c <= this.getN()}
+     * @return the element in row {@code r} and column {@code c}
+     */
+    @Override
+    public abstract double getElement(int r, int c);
+
+    /**
+     * Setter for a single element
+     * @param r     the row of the element to be set
+     * @param c     the column of the element to be set
+     * @param value the new value to be set in row {@code r} and column {@code c}
+     * @throws MatrixException if the element is outside the structure and
+     *                         {@code value} is not zero
+     */
+    @Override
+    public abstract void setElement(int r, int c, double value);
+
+    /**
+     * Gets the first column of a row that may hold a nonzero entry
+     * @param r the row, starting at 1
+     * @return the first column that may be nonzero
+     */
+    public abstract int getFirstColumn(int r);
+
+    /**
+     * Gets the last column of a row that may hold a nonzero entry
+     * @param r the row, starting at 1
+     * @return the last column that may be nonzero
+     */
+    public abstract int getLastColumn(int r);
+
+    /**
+     * Getter for the lower bandwidth
+     * @return the number of diagonals below the main diagonal that may be nonzero
+     */
+    public abstract int getLowerBandwidth();
+
+    /**
+     * Getter for the upper bandwidth
+     * @return the number of diagonals above the main diagonal that may be nonzero
+     */
+    public abstract int getUpperBandwidth();
+
+    /**
+     * Solves Ax = b, where A is this matrix
+     * @param b the right hand side, which is not modified
+     * @return the solution x
+     * @throws MatrixException if this matrix is singular
+     */
+    public abstract double[] solve(double[] b) throws MatrixException;
+
+    /**
+     * Calculates the determinant of this matrix without forming it densely
+     * @return the determinant of this matrix
+     */
+    @Override
+    public abstract double getDeterminant();
+
+    /**
+     * @return a new matrix of the same type with the same entries as this one
+     */
+    @Override
+    public abstract StructuredMatrix clone();
+
+    /**
+     * Construct the inverse of this matrix by solving for one column at a time.
+     * The inverse of a banded matrix is dense in general, so this returns a
+     * dense matrix unless a subclass knows better.
+     * @return the inverse of this matrix
+     * @throws MatrixException if this matrix is singular, or so badly conditioned
+     *                         that no digit of the inverse would be correct
+     */
+    public SquareMatrix getInverse() throws MatrixException {
+        int n = this.getN();
+        double[][] inverse = new double[n][n];
+        double[] column = new double[n];
+        for (int c = 0; c < n; c++) {
+            column[c] = 1;
+            double[] solution = this.solve(column);
+            column[c] = 0;
+            for (int r = 0; r < n; r++) {
+                inverse[r][c] = solution[r];
+            }
+        }
+        return this.checkCondition(new SquareMatrix(inverse));
+    }
+
+    /**
+     * Applies the test {@code LUDecomposition.getInverse} uses to an inverse that
+     * has already been computed. With the inverse at hand, the condition number
+     * ||A|| ||A^-1|| in the 1-norm is computed directly rather than estimated.
+     * @param <T>     the type of the inverse
+     * @param inverse the computed inverse of this matrix
+     * @return {@code inverse}
+     * @throws MatrixException if this matrix is so badly conditioned that no
+     *                         digit of the inverse would be correct
+     */
+    protected <T extends SquareMatrix> T checkCondition(T inverse) throws MatrixException {
+        double conditionNumber = oneNorm(this) * oneNorm(inverse);
+        if (LUDecomposition.isTooIllConditioned(conditionNumber)) {
+            throw LUDecomposition.notInvertible(conditionNumber);
+        }
+        return inverse;
+    }
+
+    /**
+     * Creates the exception for a matrix whose pivot was negligible, reporting the
+     * condition number estimated as ||A|| / |pivot| in the 1-norm. When the
+     * pivots are the diagonal of a triangular factor, 1 / |pivot| is an entry of
+     * that factor's inverse, so the estimate shows how large the inverse gets
+     * without any more solves.
+     * @param smallestPivot the pivot of least absolute value
+     * @return the exception to throw, reporting an infinite condition number if
+     *         the pivot is exactly zero
+     */
+    protected MatrixException notInvertible(double smallestPivot) {
+        return LUDecomposition.notInvertible(smallestPivot == 0.0 ? Double.POSITIVE_INFINITY
+                : oneNorm(this) / Math.abs(smallestPivot));
+    }
+
+    /**
+     * Finds the diagonal entry of least absolute value, which is the smallest
+     * pivot of a triangular matrix
+     * @return the smallest diagonal entry in absolute value
+     */
+    protected double getSmallestDiagonal() {
+        double smallest = this.getElement(1, 1);
+        for (int i = 2; i <= this.getN(); i++) {
+            double d = this.getElement(i, i);
+            if (Math.abs(d) < Math.abs(smallest)) {
+                smallest = d;
+            }
+        }
+        return smallest;
+    }
+
+    /**
+     * Finds the 1-norm of a matrix, its largest absolute column sum, visiting
+     * only the stored entries if it is structured
+     * @param mat the matrix
+     * @return the 1-norm of {@code mat}
+     */
+    private static double oneNorm(SquareMatrix mat) {
+        int n = mat.getN();
+        double[] columnSums = new double[n];
+        for (int r = 1; r <= n; r++) {
+            if (mat instanceof StructuredMatrix) {
+                StructuredMatrix structured = (StructuredMatrix) mat;
+                for (int c = structured.getFirstColumn(r); c <= structured.getLastColumn(r); c++) {
+                    columnSums[c - 1] += Math.abs(structured.getElement(r, c));
+                }
+            } else {
+                double[] row = mat.getRow(r);
+                for (int c = 0; c < n; c++) {
+                    columnSums[c] += Math.abs(row[c]);
+                }
+            }
+        }
+        double norm = 0;
+        for (double sum : columnSums) {
+            norm = Math.max(norm, sum);
+        }
+        return norm;
+    }
+
+    /**
+     * Multiplies this matrix by a vector, visiting only the stored entries
+     * @param x a vector with {@code this.getN()} entries
+     * @return the product Ax
+     */
+    public double[] multiply(double[] x) {
+        assert x.length == this.getN() : "Vector must have " + this.getN() + " entries";
+
+        double[] output = new double[x.length];
+        for (int r = 1; r <= output.length; r++) {
+            double sum = 0;
+            for (int c = this.getFirstColumn(r); c <= this.getLastColumn(r); c++) {
+                sum += this.getElement(r, c) * x[c - 1];
+            }
+            output[r - 1] = sum;
+        }
+        return output;
+    }
+
+    /**
+     * Multiplies this matrix on the right by another
+     * @param other the right factor
+     * @return the product of this matrix and {@code other}. Note that this
+     *         method will return a {@code SquareMatrix} if the product is square,
+     *         and a {@code StructuredMatrix} as described in
+     *         {@link #multiply(StructuredMatrix)} if {@code other} is structured
+     */
+    Matrix multiply(Matrix other) {
+        if (other instanceof StructuredMatrix) {
+            return this.multiply((StructuredMatrix) other);
+        }
+
+        int rows = this.getN();
+        int cols = other.getCols();
+        double[][] result = new double[rows][cols];
+        for (int r = 1; r <= rows; r++) {
+            double[] resultRow = result[r - 1];
+            for (int k = this.getFirstColumn(r); k <= this.getLastColumn(r); k++) {
+                double factor = this.getElement(r, k);
+                if (factor == 0.0) {
+                    continue;
+                }
+                double[] rightRow = other.getRow(k);
+                for (int c = 0; c < cols; c++) {
+                    resultRow[c] += factor * rightRow[c];
+                }
+            }
+        }
+        return rows == cols ? new SquareMatrix(result) : new Matrix(result);
+    }
+
+    /**
+     * Multiplies this matrix on the right by another structured matrix. Entry
+     * (r, c) of the product is zero unless c - r is within the sums of the
+     * factors' bandwidths, so the product is structured with those bandwidths.
+     * It is a {@code TriangularMatrix} if one of them is zero and the other spans
+     * the whole matrix, and a {@code BandedMatrix} of the most specific type
+     * otherwise. Only if the band covers every entry is the product an ordinary
+     * {@code SquareMatrix}, since storing it as a band would save nothing.
+     * @param right the right factor
+     * @return the product of this matrix and {@code right}
+     */
+    private SquareMatrix multiply(StructuredMatrix right) {
+        assert right.getN() == this.getN() : "Matrices must have the same dimension to multiply them";
+
+        int n = this.getN();
+        int lower = Math.min(n - 1, this.getLowerBandwidth() + right.getLowerBandwidth());
+        int upper = Math.min(n - 1, this.getUpperBandwidth() + right.getUpperBandwidth());
+        StructuredMatrix output;
+        if (n > 1 && lower == n - 1 && upper == n - 1) {
+            output = null;
+        } else if (n > 1 && (lower == 0 || upper == 0) && lower + upper == n - 1) {
+            output = new TriangularMatrix(n, lower == 0);
+        } else {
+            output = BandedMatrix.create(n, lower, upper);
+        }
+
+        // Each row is summed in a dense array, visiting only the stored entries
+        // of both factors, and then copied into the band of the product
+        double[][] dense = output == null ? new double[n][n] : null;
+        double[] row = new double[n];
+        for (int r = 1; r <= n; r++) {
+            double[] resultRow = output == null ? dense[r - 1] : row;
+            int first = output == null ? 1 : output.getFirstColumn(r);
+            int last = output == null ? n : output.getLastColumn(r);
+            Arrays.fill(resultRow, first - 1, last, 0.0);
+            for (int k = this.getFirstColumn(r); k <= this.getLastColumn(r); k++) {
+                double factor = this.getElement(r, k);
+                if (factor == 0.0) {
+                    continue;
+                }
+                for (int c = right.getFirstColumn(k); c <= right.getLastColumn(k); c++) {
+                    resultRow[c - 1] += factor * right.getElement(k, c);
+                }
+            }
+            if (output != null) {
+                for (int c = first; c <= last; c++) {
+                    output.setElement(r, c, resultRow[c - 1]);
+                }
+            }
+        }
+        return output == null ? new SquareMatrix(dense) : output;
+    }
+
+    /**
+     * Multiplies this matrix on the left by another
+     * @param other the left factor
+     * @return the product of {@code other} and this matrix. Note that this
+     *         method will return a {@code SquareMatrix} if the product is square
+     */
+    Matrix multiplyOnLeft(Matrix other) {
+        int rows = other.getRows();
+        int cols = this.getN();
+        double[][] result = new double[rows][cols];
+        for (int r = 1; r <= rows; r++) {
+            double[] resultRow = result[r - 1];
+            double[] leftRow = other.getRow(r);
+            for (int k = 1; k <= cols; k++) {
+                double factor = leftRow[k - 1];
+                if (factor == 0.0) {
+                    continue;
+                }
+                for (int c = this.getFirstColumn(k); c <= this.getLastColumn(k); c++) {
+                    resultRow[c - 1] += factor * this.getElement(k, c);
+                }
+            }
+        }
+        return rows == cols ? new SquareMatrix(result) : new Matrix(result);
+    }
+
+    /**
+     * Creates a dense copy of this matrix
+     * @return a new {@code SquareMatrix} with the same entries as this one
+     */
+    public SquareMatrix toSquareMatrix() {
+        return new SquareMatrix(this.getMatrix());
+    }
+
+    /**
+     * Finds the size below which a pivot of this matrix is treated as zero, which
+     * is the same tolerance {@code LUDecomposition} uses for a dense matrix
+     * @return the pivot tolerance, relative to the largest entry of this matrix
+     */
+    protected double getPivotTolerance() {
+        double maxEntry = 0;
+        for (int r = 1; r <= this.getN(); r++) {
+            for (int c = this.getFirstColumn(r); c <= this.getLastColumn(r); c++) {
+                maxEntry = Math.max(maxEntry, Math.abs(this.getElement(r, c)));
+            }
+        }
+        return LUDecomposition.pivotTolerance(this.getN(), maxEntry);
+    }
+
+    /**
+     * Checks that a row and column are in this matrix
+     * @param r the row
+     * @param c the column
+     */
+    protected void checkIndices(int r, int c) {
+        assert r >= 1 && r <= this.getN() : "Row " + r + " not in matrix";
+        assert c >= 1 && c <= this.getN() : "Column " + c + " not in matrix";
+    }
+
+    /**
+     * Creates a dense copy of the entries of this matrix
+     * @return a new 2D array, which does not back this matrix
+     */
+    @Override
+    public double[][] getMatrix() {
+        double[][] output = new double[this.getN()][];
+        for (int r = 1; r <= output.length; r++) {
+            output[r - 1] = this.getRow(r);
+        }
+        return output;
+    }
+
+    /**
+     * Creates a dense copy of a single row
+     * @param row the row to be accessed
+     * @return a new array holding the requested row
+     */
+    @Override
+    public double[] getRow(int row) {
+        assert row <= this.getN() && row >= 1 : "Row " + row + " not in matrix";
+
+        double[] output = new double[this.getN()];
+        for (int c = this.getFirstColumn(row); c <= this.getLastColumn(row); c++) {
+            output[c - 1] = this.getElement(row, c);
+        }
+        return output;
+    }
+
+    /**
+     * Structured matrices have no backing array to replace
+     * @throws MatrixException always
+     */
+    @Override
+    public void setMatrix(double[][] matrix) {
+        throw this.unsupported();
+    }
+
+    /**
+     * Structured matrices have no backing array to replace
+     * @throws MatrixException always
+     */
+    @Override
+    public void setMatrix(int[][] matrix) {
+        throw this.unsupported();
+    }
+
+    /**
+     * Row operations do not keep the structure of this matrix
+     * @throws MatrixException always
+     */
+    @Override
+    public void scaleRow(int row, double factor) {
+        throw this.unsupported();
+    }
+
+    /**
+     * Row operations do not keep the structure of this matrix
+     * @throws MatrixException always
+     */
+    @Override
+    public void interchangeRows(int rowOne, int rowTwo) {
+        throw this.unsupported();
+    }
+
+    /**
+     * Row operations do not keep the structure of this matrix
+     * @throws MatrixException always
+     */
+    @Override
+    public void addRows(int rowOne, int rowTwo, double factor) {
+        throw this.unsupported();
+    }
+
+    /**
+     * Row operations do not keep the structure of this matrix
+     * @throws MatrixException always
+     */
+    @Override
+    public void reduceToEchelon(MatrixWorkspace ws) {
+        throw this.unsupported();
+    }
+
+    /**
+     * Row operations do not keep the structure of this matrix
+     * @throws MatrixException always
+     */
+    @Override
+    public void reduceToRREF(MatrixWorkspace ws) {
+        throw this.unsupported();
+    }
+
+    private MatrixException unsupported() {
+        return new MatrixException(
+                "A " + this.getClass().getSimpleName() + " cannot be modified that way, use toSquareMatrix() first");
+    }
+
+    /**
+     * Creates the exception for setting an entry outside the structure to
+     * something other than zero. This is static so that constructors can use it
+     * before a subclass is initialized.
+     * @param type the class of the matrix
+     * @param r    the row of the entry
+     * @param c    the column of the entry
+     * @return the exception to throw
+     */
+    protected static MatrixException outsideStructure(Class<?> type, int r, int c) {
+        return new MatrixException("Entry (" + r + ", " + c + ") of a " + type.getSimpleName() + " must be zero");
+    }
+
+}
@@ -0,0 +1,204 @@
+/**
+ * This class represents a square matrix that is zero either below the diagonal
+ * (upper triangular) or above it (lower triangular). Only the n(n + 1) / 2
+ * entries of the triangle are stored. Systems are solved by substitution in
+ * O(n^2), the determinant is the product of the diagonal, and the inverse is
+ * triangular of the same kind.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class TriangularMatrix extends StructuredMatrix {
+
+    // Row r, starting at 0, holds columns r to n - 1 if upper, 0 to r if lower
+    private final double[][] rows;
+    private final boolean upper;
+
+    /**
+     * Constructs the zero matrix of the given dimension
+     * @param n     the number of rows and columns
+     * @param upper whether the matrix is upper triangular rather than lower
+     */
+    public TriangularMatrix(int n, boolean upper) {
+        super(n);
+        this.upper = upper;
+        this.rows = new double[n][];
+        for (int r = 0; r < n; r++) {
+            this.rows[r] = new double[upper ? n - r : r + 1];
+        }
+    }
+
+    /**
+     * Constructs a triangular copy of the given matrix
+     * @param m     the matrix to be copied
+     * @param upper whether the matrix is upper triangular rather than lower
+     * @throws MatrixException if {@code m} has a nonzero entry outside the
+     *                         triangle
+     */
+    public TriangularMatrix(SquareMatrix m, boolean upper) throws MatrixException {
+        this(m.getN(), upper);
+        for (int r = 1; r <= m.getN(); r++) {
+            double[] row = m.getRow(r);
+            for (int c = 1; c <= row.length; c++) {
+                if (!(upper ? c < r : c > r)) {
+                    this.rows[r - 1][upper ? c - r : c - 1] = row[c - 1];
+                } else if (row[c - 1] != 0) {
+                    throw outsideStructure(this.getClass(), r, c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks which triangle this matrix is
+     * @return whether this matrix is upper triangular, rather than lower
+     */
+    public boolean isUpper() {
+        return this.upper;
+    }
+
+    @Override
+    public int getFirstColumn(int r) {
+        return this.upper ? r : 1;
+    }
+
+    @Override
+    public int getLastColumn(int r) {
+        return this.upper ? this.getN() : r;
+    }
+
+    @Override
+    public int getLowerBandwidth() {
+        return this.upper ? 0 : this.getN() - 1;
+    }
+
+    @Override
+    public int getUpperBandwidth() {
+        return this.upper ? this.getN() - 1 : 0;
+    }
+
+    @Override
+    public double getElement(int r, int c) {
+        this.checkIndices(r, c);
+        if (this.upper ? c < r : c > r) {
+            return 0;
+        }
+        return this.rows[r - 1][this.upper ? c - r : c - 1];
+    }
+
+    @Override
+    public void setElement(int r, int c, double value) {
+        this.checkIndices(r, c);
+        if (this.upper ? c < r : c > r) {
+            if (value != 0) {
+                throw outsideStructure(this.getClass(), r, c);
+            }
+            return;
+        }
+        this.rows[r - 1][this.upper ? c - r : c - 1] = value;
+    }
+
+    @Override
+    public double[] solve(double[] b) throws MatrixException {
+        assert b.length == this.getN() : "Right hand side must have " + this.getN() + " entries";
+
+        int n = this.getN();
+        double tolerance = this.getPivotTolerance();
+        double[] x = b.clone();
+        if (this.upper) {
+            // Back substitution
+            for (int r = n - 1; r >= 0; r--) {
+                double[] row = this.rows[r];
+                double sum = x[r];
+                for (int c = r + 1; c < n; c++) {
+                    sum -= row[c - r] * x[c];
+                }
+                x[r] = this.divide(sum, row[0], tolerance);
+            }
+        } else {
+            // Forward substitution
+            for (int r = 0; r < n; r++) {
+                double[] row = this.rows[r];
+                double sum = x[r];
+                for (int c = 0; c < r; c++) {
+                    sum -= row[c] * x[c];
+                }
+                x[r] = this.divide(sum, row[r], tolerance);
+            }
+        }
+        return x;
+    }
+
+    private double divide(double sum, double diagonal, double tolerance) throws MatrixException {
+        if (Math.abs(diagonal) <= tolerance) {
+            throw this.notInvertible(this.getSmallestDiagonal());
+        }
+        return sum / diagonal;
+    }
+
+    /**
+     * Calculates the determinant as the product of the diagonal
+     * @return the determinant of this matrix
+     */
+    @Override
+    public double getDeterminant() {
+        double det = 1;
+        for (int i = 1; i <= this.getN(); i++) {
+            det *= this.getElement(i, i);
+        }
+        return det;
+    }
+
+    /**
+     * Construct the inverse, which is triangular of the same kind. Column c of
+     * the inverse of a lower triangular matrix is zero above row c, so each
+     * substitution only has to start there, and likewise for upper triangular.
+     * @return the inverse of this matrix
+     * @throws MatrixException if an entry of the diagonal is negligible next to
+     *                         the largest entry, or this matrix is so badly
+     *                         conditioned that no digit of the inverse would be
+     *                         correct
+     */
+    @Override
+    public TriangularMatrix getInverse() throws MatrixException {
+        int n = this.getN();
+        double tolerance = this.getPivotTolerance();
+        TriangularMatrix output = new TriangularMatrix(n, this.upper);
+        double[] x = new double[n];
+        for (int col = 0; col < n; col++) {
+            if (this.upper) {
+                // Only rows col down to 0 of this column can be nonzero
+                for (int r = col; r >= 0; r--) {
+                    double[] row = this.rows[r];
+                    double sum = r == col ? 1 : 0;
+                    for (int c = r + 1; c <= col; c++) {
+                        sum -= row[c - r] * x[c];
+                    }
+                    x[r] = this.divide(sum, row[0], tolerance);
+                    output.rows[r][col - r] = x[r];
+                }
+            } else {
+                // Only rows col to n - 1 of this column can be nonzero
+                for (int r = col; r < n; r++) {
+                    double[] row = this.rows[r];
+                    double sum = r == col ? 1 : 0;
+                    for (int c = col; c < r; c++) {
+                        sum -= row[c] * x[c];
+                    }
+                    x[r] = this.divide(sum, row[r], tolerance);
+                    output.rows[r][col] = x[r];
+                }
+            }
+        }
+        return this.checkCondition(output);
+    }
+
+    @Override
+    public TriangularMatrix clone() {
+        TriangularMatrix output = new TriangularMatrix(this.getN(), this.upper);
+        for (int r = 0; r < this.rows.length; r++) {
+            System.arraycopy(this.rows[r], 0, output.rows[r], 0, this.rows[r].length);
+        }
+        return output;
+    }
+
+}
@@ -0,0 +1,96 @@
+/**
+ * This class represents a square matrix whose only nonzero entries are on the
+ * diagonal and the diagonals just above and below it. Only those 3n - 2
+ * entries are stored, so even a system with a million unknowns takes a few
+ * megabytes and is solved in O(n).
+ * <p>
+ * Systems are solved with the Thomas algorithm, which is Gaussian elimination
+ * without pivoting, when the matrix is diagonally dominant and that is known to
+ * be stable. Otherwise the banded LU factorization with partial pivoting is
+ * used, which is also O(n).
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class TridiagonalMatrix extends BandedMatrix {
+
+    /**
+     * Constructs the zero matrix of the given dimension
+     * @param n the number of rows and columns
+     */
+    public TridiagonalMatrix(int n) {
+        super(n, 1, 1);
+    }
+
+    /**
+     * Constructs a matrix from its three diagonals
+     * @param lower    the n - 1 entries below the diagonal, from the top left
+     * @param diagonal the n entries of the diagonal, from the top left
+     * @param upper    the n - 1 entries above the diagonal, from the top left
+     */
+    public TridiagonalMatrix(double[] lower, double[] diagonal, double[] upper) {
+        super(1, lower, diagonal, upper);
+    }
+
+    /**
+     * Checks whether each diagonal entry is at least as large as the rest of its
+     * row, in which case the Thomas algorithm needs no pivoting
+     * @return whether this matrix is diagonally dominant by rows
+     */
+    private boolean isDiagonallyDominant() {
+        int n = this.getN();
+        for (int i = 1; i <= n; i++) {
+            double offDiagonal = (i > 1 ? Math.abs(this.getElement(i, i - 1)) : 0)
+                    + (i < n ? Math.abs(this.getElement(i, i + 1)) : 0);
+            if (Math.abs(this.getElement(i, i)) < offDiagonal) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public double[] solve(double[] b) throws MatrixException {
+        assert b.length == this.getN() : "Right hand side must have " + this.getN() + " entries";
+        if (!this.isDiagonallyDominant()) {
+            return super.solve(b);
+        }
+
+        int n = this.getN();
+        double tolerance = this.getPivotTolerance();
+        double[] upperPrime = new double[n];
+        double[] x = new double[n];
+
+        // Forward sweep: eliminate the lower diagonal, making the diagonal all ones
+        double denominator = this.getElement(1, 1);
+        for (int i = 1; i <= n; i++) {
+            if (i > 1) {
+                double l = this.getElement(i, i - 1);
+                denominator = this.getElement(i, i) - l * upperPrime[i - 2];
+                x[i - 1] = b[i - 1] - l * x[i - 2];
+            } else {
+                x[0] = b[0];
+            }
+            if (Math.abs(denominator) <= tolerance) {
+                // Possible when a row is only weakly dominant, pivoting decides
+                return super.solve(b);
+            }
+            if (i < n) {
+                upperPrime[i - 1] = this.getElement(i, i + 1) / denominator;
+            }
+            x[i - 1] /= denominator;
+        }
+        // Back substitution with the unit upper bidiagonal
+        for (int i = n - 1; i >= 1; i--) {
+            x[i - 1] -= upperPrime[i - 1] * x[i];
+        }
+        return x;
+    }
+
+    @Override
+    public TridiagonalMatrix clone() {
+        TridiagonalMatrix output = new TridiagonalMatrix(this.getN());
+        this.copyInto(output);
+        return output;
+    }
+
+}
@@ -0,0 +1,472 @@
+import java.util.Arrays;
+
+/**
+ * This class keeps the inverse of a {@code SquareMatrix} up to date while the
+ * matrix is changed a few entries, rows or columns at a time. Each change is a
+ * low-rank update, so instead of recomputing the inverse in O(n^3) it is
+ * corrected with the Sherman-Morrison formula (rank 1) or the Woodbury formula
+ * (rank k) in O(n^2 k).
+ * <p>
+ * Rounding errors accumulate with every update, so after each one the inverse
+ * is checked against the matrix with an O(n^2) residual test. The inverse is
+ * recomputed from a fresh factorization when that residual drifts above the
+ * tolerance, when an update is nearly singular, or after a fixed number of
+ * updates.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class UpdatableInverse {
+
+    /**
+     * The largest relative residual allowed before the inverse is recomputed, if
+     * none is specified
+     */
+    public final static double DEFAULT_DRIFT_TOLERANCE = 1e-10;
+
+    /**
+     * The number of updates after which the inverse is recomputed, if none is
+     * specified
+     */
+    public final static int DEFAULT_MAX_UPDATES = 100;
+
+    /**
+     * Sherman-Morrison denominators smaller than this, relative to the size of the
+     * terms that make them up, are treated as a sign of cancellation
+     */
+    private final static double DENOMINATOR_TOLERANCE = 1e-8;
+
+    private final double[][] mat;
+    private double[][] inverse;
+    private final int n;
+    private final double driftTolerance;
+    private final int maxUpdates;
+    private int updatesSinceRefactorization;
+    private int refactorizations;
+
+    /**
+     * Constructs an updatable inverse with the default drift tolerance and update
+     * limit
+     * @param m the matrix to invert, which is copied
+     * @throws MatrixException if {@code m} is not invertible
+     */
+    public UpdatableInverse(SquareMatrix m) throws MatrixException {
+        this(m, DEFAULT_DRIFT_TOLERANCE, DEFAULT_MAX_UPDATES);
+    }
+
+    /**
+     * Constructs an updatable inverse
+     * @param m              the matrix to invert, which is copied
+     * @param driftTolerance the largest relative residual allowed before the
+     *                       inverse is recomputed
+     * @param maxUpdates     the number of updates after which the inverse is
+     *                       always recomputed
+     * @throws MatrixException if {@code m} is not invertible
+     */
+    public UpdatableInverse(SquareMatrix m, double driftTolerance, int maxUpdates) throws MatrixException {
+        assert driftTolerance > 0 : "Drift tolerance must be positive";
+        assert maxUpdates >= 1 : "Must allow at least one update between refactorizations";
+
+        this.mat = m.clone().getMatrix();
+        this.n = m.getN();
+        this.driftTolerance = driftTolerance;
+        this.maxUpdates = maxUpdates;
+        this.inverse = new LUDecomposition(copy(this.mat)).getInverseArray();
+    }
+
+    /**
+     * Gets the dimension of the matrix
+     * @return the number of rows and columns
+     */
+    public int getN() {
+        return this.n;
+    }
+
+    /**
+     * @return a copy of the matrix in its current state
+     */
+    public SquareMatrix getMatrix() {
+        return new SquareMatrix(copy(this.mat));
+    }
+
+    /**
+     * @return a copy of the current inverse
+     */
+    public SquareMatrix getInverse() {
+        return new SquareMatrix(copy(this.inverse));
+    }
+
+    /**
+     * Getter for the number of times the inverse has been recomputed from scratch
+     * since construction
+     * @return the number of full refactorizations
+     */
+    public int getRefactorizationCount() {
+        return this.refactorizations;
+    }
+
+    /**
+     * Solves Ax = b with the current inverse
+     * @param b the right hand side
+     * @return the solution x
+     */
+    public double[] solve(double[] b) {
+        assert b.length == this.n : "Right hand side must have " + this.n + " entries";
+        return multiply(this.inverse, b);
+    }
+
+    /**
+     * Changes a single element of the matrix and updates the inverse
+     * @param r     the row of the element to be set
+     * @param c     the column of the element to be set
+     * @param value the new value
+     * @throws MatrixException if the change makes the matrix singular, in which
+     *                         case the matrix is left unchanged
+     */
+    public void setElement(int r, int c, double value) throws MatrixException {
+        assert r >= 1 && r <= this.n : "Row " + r + " not in matrix";
+        assert c >= 1 && c <= this.n : "Column " + c + " not in matrix";
+
+        double delta = value - this.mat[r - 1][c - 1];
+        if (delta == 0) {
+            return;
+        }
+        double[] u = new double[this.n];
+        double[] v = new double[this.n];
+        u[r - 1] = delta;
+        v[c - 1] = 1;
+        this.rankOneUpdate(u, v);
+    }
+
+    /**
+     * Changes several elements of the matrix at once with a single rank-k update.
+     * If the same element is given more than once, the last value is used.
+     * @param rows   the rows of the elements to be set
+     * @param cols   the columns of the elements to be set
+     * @param values the new values
+     * @throws MatrixException if the changes make the matrix singular, in which
+     *                         case the matrix is left unchanged
+     */
+    public void setElements(int[] rows, int[] cols, double[] values) throws MatrixException {
+        assert rows.length == cols.length && cols.length == values.length : "Need one row and column per value";
+
+        // Each delta is taken against the current matrix, so a repeated element
+        // would be changed twice. Only its last occurrence is kept
+        int k = 0;
+        boolean[] keep = new boolean[values.length];
+        for (int i = 0; i < values.length; i++) {
+            assert rows[i] >= 1 && rows[i] <= this.n : "Row " + rows[i] + " not in matrix";
+            assert cols[i] >= 1 && cols[i] <= this.n : "Column " + cols[i] + " not in matrix";
+            keep[i] = true;
+            for (int j = i + 1; j < values.length && keep[i]; j++) {
+                keep[i] = rows[j] != rows[i] || cols[j] != cols[i];
+            }
+            if (keep[i]) {
+                k++;
+            }
+        }
+
+        double[][] u = new double[k][this.n];
+        double[][] v = new double[k][this.n];
+        int index = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (keep[i]) {
+                u[index][rows[i] - 1] = values[i] - this.mat[rows[i] - 1][cols[i] - 1];
+                v[index][cols[i] - 1] = 1;
+                index++;
+            }
+        }
+        if (k > 0) {
+            this.rankUpdate(u, v);
+        }
+    }
+
+    /**
+     * Replaces a row of the matrix and updates the inverse
+     * @param r   the row to be replaced
+     * @param row the new contents of the row
+     * @throws MatrixException if the change makes the matrix singular, in which
+     *                         case the matrix is left unchanged
+     */
+    public void replaceRow(int r, double[] row) throws MatrixException {
+        assert r >= 1 && r <= this.n : "Row " + r + " not in matrix";
+        assert row.length == this.n : "Row must have " + this.n + " entries";
+
+        double[] u = new double[this.n];
+        double[] v = new double[this.n];
+        u[r - 1] = 1;
+        for (int c = 0; c < this.n; c++) {
+            v[c] = row[c] - this.mat[r - 1][c];
+        }
+        this.rankOneUpdate(u, v);
+    }
+
+    /**
+     * Replaces a column of the matrix and updates the inverse
+     * @param c   the column to be replaced
+     * @param col the new contents of the column
+     * @throws MatrixException if the change makes the matrix singular, in which
+     *                         case the matrix is left unchanged
+     */
+    public void replaceColumn(int c, double[] col) throws MatrixException {
+        assert c >= 1 && c <= this.n : "Column " + c + " not in matrix";
+        assert col.length == this.n : "Column must have " + this.n + " entries";
+
+        double[] u = new double[this.n];
+        double[] v = new double[this.n];
+        for (int r = 0; r < this.n; r++) {
+            u[r] = col[r] - this.mat[r][c - 1];
+        }
+        v[c - 1] = 1;
+        this.rankOneUpdate(u, v);
+    }
+
+    /**
+     * Replaces A with A + uv^T and updates the inverse with the Sherman-Morrison
+     * formula
+     * @param u a column vector with n entries
+     * @param v a column vector with n entries
+     * @throws MatrixException if the change makes the matrix singular, in which
+     *                         case the matrix is left unchanged
+     */
+    public void rankOneUpdate(double[] u, double[] v) throws MatrixException {
+        assert u.length == this.n && v.length == this.n : "Update vectors must have " + this.n + " entries";
+
+        double[][] saved = this.saveRows(new double[][] { u });
+        addOuterProduct(this.mat, u, v, 1);
+
+        double[] invU = multiply(this.inverse, u); // A^-1 u
+        double[] vInv = multiplyTranspose(v, this.inverse); // v^T A^-1
+        double dot = 0;
+        double scale = 0;
+        for (int i = 0; i < this.n; i++) {
+            dot += v[i] * invU[i];
+            scale += Math.abs(v[i] * invU[i]);
+        }
+        double denominator = 1 + dot;
+
+        if (Math.abs(denominator) <= DENOMINATOR_TOLERANCE * (1 + scale)) {
+            this.refactorReverting(saved);
+            return;
+        }
+
+        addOuterProduct(this.inverse, invU, vInv, -1 / denominator);
+        this.afterUpdate(saved);
+    }
+
+    /**
+     * Replaces A with A + UV^T and updates the inverse with the Woodbury formula
+     * @param u the k columns of U, each with n entries
+     * @param v the k columns of V, each with n entries
+     * @throws MatrixException if the change makes the matrix singular, in which
+     *                         case the matrix is left unchanged
+     */
+    public void rankUpdate(double[][] u, double[][] v) throws MatrixException {
+        assert u.length == v.length : "U and V must have the same number of columns";
+
+        int k = u.length;
+        if (k == 1) {
+            this.rankOneUpdate(u[0], v[0]);
+            return;
+        }
+        double[][] saved = this.saveRows(u);
+        for (int i = 0; i < k; i++) {
+            addOuterProduct(this.mat, u[i], v[i], 1);
+        }
+
+        double[][] invU = new double[k][]; // columns of A^-1 U
+        double[][] vInv = new double[k][]; // rows of V^T A^-1
+        for (int i = 0; i < k; i++) {
+            invU[i] = multiply(this.inverse, u[i]);
+            vInv[i] = multiplyTranspose(v[i], this.inverse);
+        }
+
+        // The capacitance matrix I + V^T A^-1 U
+        double[][] capacitance = new double[k][k];
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < k; j++) {
+                double dot = 0;
+                for (int r = 0; r < this.n; r++) {
+                    dot += v[i][r] * invU[j][r];
+                }
+                capacitance[i][j] = (i == j ? 1 : 0) + dot;
+            }
+        }
+
+        LUDecomposition small = new LUDecomposition(capacitance);
+        if (small.isSingular()) {
+            this.refactorReverting(saved);
+            return;
+        }
+        double[][] smallInverse = small.getInverseArray();
+
+        // A^-1 - (A^-1 U) C^-1 (V^T A^-1), one rank one term per column of U
+        double[] combined = new double[this.n];
+        for (int i = 0; i < k; i++) {
+            Arrays.fill(combined, 0);
+            for (int j = 0; j < k; j++) {
+                double factor = smallInverse[i][j];
+                for (int c = 0; c < this.n; c++) {
+                    combined[c] += factor * vInv[j][c];
+                }
+            }
+            addOuterProduct(this.inverse, invU[i], combined, -1);
+        }
+        this.afterUpdate(saved);
+    }
+
+    /**
+     * Recomputes the inverse from a fresh factorization of the matrix
+     * @throws MatrixException if the matrix is not invertible
+     */
+    public void refactor() throws MatrixException {
+        LUDecomposition lu = new LUDecomposition(copy(this.mat));
+        this.inverse = lu.getInverseArray();
+        this.updatesSinceRefactorization = 0;
+        this.refactorizations++;
+    }
+
+    /**
+     * Measures how far the inverse has drifted from the matrix by solving with
+     * a vector of ones and checking the residual
+     * @return the relative residual ||A(A^-1 e) - e|| / (||A|| ||A^-1 e||)
+     */
+    public double getDrift() {
+        double[] ones = new double[this.n];
+        Arrays.fill(ones, 1);
+        double[] x = multiply(this.inverse, ones);
+        double[] ax = multiply(this.mat, x);
+
+        double residual = 0;
+        double xNorm = 0;
+        double aNorm = 0;
+        for (int i = 0; i < this.n; i++) {
+            residual = Math.max(residual, Math.abs(ax[i] - 1));
+            xNorm = Math.max(xNorm, Math.abs(x[i]));
+            double rowSum = 0;
+            for (double d : this.mat[i]) {
+                rowSum += Math.abs(d);
+            }
+            aNorm = Math.max(aNorm, rowSum);
+        }
+        return residual / (aNorm * xNorm);
+    }
+
+    /**
+     * Refactors if too many updates have been applied or the inverse has drifted.
+     * If the refactorization finds the updated matrix singular, the update is
+     * undone on both the matrix and the inverse.
+     * @param saved the rows of the matrix from before the update
+     * @throws MatrixException if the updated matrix is not invertible
+     */
+    private void afterUpdate(double[][] saved) throws MatrixException {
+        this.updatesSinceRefactorization++;
+        if (this.updatesSinceRefactorization >= this.maxUpdates || !(this.getDrift() <= this.driftTolerance)) {
+            try {
+                this.refactorReverting(saved);
+            } catch (MatrixException e) {
+                // The inverse was already updated, so rebuild it for the restored matrix
+                this.refactor();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Refactors after an update that was too close to singular to apply directly.
+     * If the updated matrix really is singular, the update is undone.
+     * @param saved the rows of the matrix from before the update
+     * @throws MatrixException if the updated matrix is not invertible
+     */
+    private void refactorReverting(double[][] saved) throws MatrixException {
+        try {
+            this.refactor();
+        } catch (MatrixException e) {
+            // Subtracting the update again could cancel, so the rows are restored
+            for (int r = 0; r < this.n; r++) {
+                if (saved[r] != null) {
+                    this.mat[r] = saved[r];
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Copies the rows of the matrix that an update A + UV^T will change
+     * @param u the columns of U
+     * @return copies of the rows where U is nonzero, and null for the others
+     */
+    private double[][] saveRows(double[][] u) {
+        double[][] saved = new double[this.n][];
+        for (double[] column : u) {
+            for (int r = 0; r < this.n; r++) {
+                if (column[r] != 0 && saved[r] == null) {
+                    saved[r] = this.mat[r].clone();
+                }
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Computes mat += factor * xy^T
+     */
+    private static void addOuterProduct(double[][] mat, double[] x, double[] y, double factor) {
+        for (int r = 0; r < x.length; r++) {
+            double scaled = factor * x[r];
+            if (scaled == 0) {
+                continue;
+            }
+            double[] row = mat[r];
+            for (int c = 0; c < y.length; c++) {
+                row[c] += scaled * y[c];
+            }
+        }
+    }
+
+    /**
+     * Computes the matrix-vector product mat * x
+     */
+    private static double[] multiply(double[][] mat, double[] x) {
+        double[] result = new double[mat.length];
+        for (int r = 0; r < mat.length; r++) {
+            double sum = 0;
+            double[] row = mat[r];
+            for (int c = 0; c < x.length; c++) {
+                sum += row[c] * x[c];
+            }
+            result[r] = sum;
+        }
+        return result;
+    }
+
+    /**
+     * Computes the row vector x^T * mat
+     */
+    private static double[] multiplyTranspose(double[] x, double[][] mat) {
+        double[] result = new double[mat[0].length];
+        for (int r = 0; r < mat.length; r++) {
+            double factor = x[r];
+            if (factor == 0) {
+                continue;
+            }
+            double[] row = mat[r];
+            for (int c = 0; c < result.length; c++) {
+                result[c] += factor * row[c];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copies a 2D array row by row
+     */
+    private static double[][] copy(double[][] arr) {
+        double[][] result = new double[arr.length][];
+        for (int r = 0; r < arr.length; r++) {
+            result[r] = arr[r].clone();
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,128 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the condition number estimate of {@code LUDecomposition} against the
+ * exact 1-norm condition number of small random matrices, and checks that
+ * inverses are refused, with the estimate in the message, for singular and
+ * hopelessly ill-conditioned matrices whether dense, batched or structured.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class ConditionNumberTest {
+
+    private final static int TRIALS = 200;
+
+    private final Random random = new Random(9);
+
+    @Test
+    public void estimateIsCloseToExact() {
+        for (int trial = 0; trial < TRIALS; trial++) {
+            int n = 1 + this.random.nextInt(8);
+            SquareMatrix mat = this.randomMatrix(n);
+            LUDecomposition lu = new LUDecomposition(mat);
+            double exact = oneNorm(mat) * oneNorm(lu.getInverse());
+            double estimate = lu.estimateConditionNumber();
+
+            // The estimate is a lower bound, and Higham's method is almost always
+            // within a factor of 3 of the exact value
+            assertTrue(estimate <= exact * (1 + 1e-10), n + "x" + n + ": " + estimate + " > " + exact);
+            assertTrue(estimate >= exact / 3, n + "x" + n + ": " + estimate + " < " + exact + " / 3");
+        }
+    }
+
+    @Test
+    public void batchedMatchesSingle() {
+        SquareMatrix[] mats = new SquareMatrix[10];
+        for (int i = 0; i < mats.length; i++) {
+            mats[i] = this.randomMatrix(6);
+        }
+        BatchedLUDecomposition batched = new BatchedLUDecomposition(mats);
+        for (int i = 0; i < mats.length; i++) {
+            double expected = new LUDecomposition(mats[i]).estimateConditionNumber();
+            assertEquals(expected, batched.estimateConditionNumber(i), 1e-9 * expected);
+        }
+    }
+
+    @Test
+    public void illConditionedInverseIsRefused() {
+        // Ones on the diagonal and -1 above it. Every pivot is 1, but the inverse
+        // has entries up to 2^(n - 2), so no digit of it would be right
+        int n = 60;
+        double[][] arr = new double[n][n];
+        for (int r = 0; r < n; r++) {
+            arr[r][r] = 1;
+            for (int c = r + 1; c < n; c++) {
+                arr[r][c] = -1;
+            }
+        }
+        SquareMatrix mat = new SquareMatrix(arr);
+        LUDecomposition lu = new LUDecomposition(mat);
+        assertFalse(lu.isSingular());
+        assertTrue(lu.estimateConditionNumber() * LUDecomposition.EPSILON >= 1);
+
+        MatrixException e = assertThrows(MatrixException.class, () -> SquareMatrix.getInverse(mat));
+        assertTrue(e.getMessage().contains("condition number"), e.getMessage());
+        assertFalse(new BatchedLUDecomposition(new SquareMatrix[] { mat }).isInvertible(0));
+    }
+
+    @Test
+    public void zeroPivotIsInfinitelyIllConditioned() {
+        SquareMatrix mat = new SquareMatrix(new double[][] { { 1, 2 }, { 2, 4 } });
+        LUDecomposition lu = new LUDecomposition(mat);
+        assertTrue(lu.isSingular());
+        assertEquals(Double.POSITIVE_INFINITY, lu.estimateConditionNumber());
+        MatrixException e = assertThrows(MatrixException.class, () -> SquareMatrix.getInverse(mat));
+        assertTrue(e.getMessage().contains("Infinity"), e.getMessage());
+    }
+
+    @Test
+    public void structuredReportConditionNumber() {
+        MatrixException zero = assertThrows(MatrixException.class,
+                () -> SquareMatrix.getInverse(new DiagonalMatrix(new double[] { 1, 0 })));
+        assertTrue(zero.getMessage().contains("Infinity"), zero.getMessage());
+
+        // Not zero, but below the pivot tolerance, so the estimate is finite
+        StructuredMatrix[] mats = { new DiagonalMatrix(new double[] { 1, 1e-300 }),
+                new TriangularMatrix(new DiagonalMatrix(new double[] { 1e-20, 1e20 }).toSquareMatrix(), false),
+                new BandedMatrix(new DiagonalMatrix(new double[] { 1e20, 1, 1e-10 }).toSquareMatrix(), 1, 1) };
+        for (StructuredMatrix mat : mats) {
+            MatrixException e = assertThrows(MatrixException.class, () -> SquareMatrix.getInverse(mat));
+            assertTrue(e.getMessage().contains("condition number"), e.getMessage());
+            assertFalse(e.getMessage().contains("Infinity"), e.getMessage());
+        }
+    }
+
+    /**
+     * Creates a matrix of standard normal entries with a boosted diagonal, so
+     * that the exact inverse is accurate enough to compare against
+     */
+    private SquareMatrix randomMatrix(int n) {
+        double[][] arr = new double[n][n];
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                arr[r][c] = this.random.nextGaussian() + (r == c ? 1 : 0);
+            }
+        }
+        return new SquareMatrix(arr);
+    }
+
+    private static double oneNorm(SquareMatrix mat) {
+        double norm = 0;
+        for (int c = 1; c <= mat.getN(); c++) {
+            double sum = 0;
+            for (double entry : mat.getCol(c)) {
+                sum += Math.abs(entry);
+            }
+            norm = Math.max(norm, sum);
+        }
+        return norm;
+    }
+
+}
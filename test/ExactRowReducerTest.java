@@ -0,0 +1,166 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@code ExactRowReducer} on random integer matrices. Rather than row
+ * reducing again to compare, each result is checked exactly with the
+ * properties that define the RREF: the pivot columns hold the identity, and
+ * every row of the input is the combination of the RREF rows given by its
+ * entries in the pivot columns.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class ExactRowReducerTest {
+
+    private final static int TRIALS = 20;
+
+    @Test
+    public void smallExample() {
+        ExactRowReducer reducer = new ExactRowReducer(new int[][] { { 1, 2, 3 }, { 4, 5, 6 }, { 7, 8, 9 } });
+        assertEquals(2, reducer.getRank());
+        assertArrayEquals(new int[] { 1, 2 }, reducer.getPivotColumns());
+        assertEquals(BigInteger.valueOf(-1), reducer.getNumerator(1, 3));
+        assertEquals(BigInteger.ONE, reducer.getDenominator(1, 3));
+        assertEquals(BigInteger.valueOf(2), reducer.getNumerator(2, 3));
+        assertEquals(BigInteger.ZERO, reducer.getNumerator(3, 3));
+    }
+
+    @Test
+    public void zeroMatrix() {
+        ExactRowReducer reducer = new ExactRowReducer(new int[][] { { 0, 0 }, { 0, 0 } });
+        assertEquals(0, reducer.getRank());
+        assertArrayEquals(new int[0], reducer.getPivotColumns());
+    }
+
+    @Test
+    public void randomFullRank() {
+        Random random = new Random(1);
+        for (int trial = 0; trial < TRIALS; trial++) {
+            int rows = 1 + random.nextInt(12);
+            int cols = rows + random.nextInt(4);
+            int[][] mat = new int[rows][cols];
+            for (int[] row : mat) {
+                for (int c = 0; c < cols; c++) {
+                    row[c] = random.nextInt(2001) - 1000;
+                }
+            }
+            ExactRowReducer reducer = new ExactRowReducer(mat, 1 + random.nextInt(4));
+            assertEquals(rows, reducer.getRank());
+            checkRREF(mat, reducer);
+        }
+    }
+
+    @Test
+    public void randomLowRank() {
+        Random random = new Random(2);
+        for (int trial = 0; trial < TRIALS; trial++) {
+            int rows = 2 + random.nextInt(30);
+            int cols = 2 + random.nextInt(30);
+            int rank = 1 + random.nextInt(Math.min(rows, cols) - 1);
+            int[][] mat = lowRank(rows, cols, rank, random);
+            ExactRowReducer reducer = new ExactRowReducer(mat);
+            assertEquals(rank, reducer.getRank());
+            checkRREF(mat, reducer);
+        }
+    }
+
+    @Test
+    public void largeEntries() {
+        // Entries in the hundreds of millions need several primes before the RREF
+        // is confirmed
+        Random random = new Random(3);
+        int[][] mat = lowRank(25, 30, 20, random);
+        ExactRowReducer reducer = new ExactRowReducer(mat, 2);
+        assertEquals(20, reducer.getRank());
+        checkRREF(mat, reducer);
+    }
+
+    /**
+     * Creates a random matrix that is the product of a rows x rank and a rank x
+     * cols matrix, so its rank is {@code rank} with overwhelming probability.
+     * The factors are as large as they can be without the product overflowing.
+     */
+    private static int[][] lowRank(int rows, int cols, int rank, Random random) {
+        int bound = (int) Math.sqrt(Integer.MAX_VALUE / rank);
+        int[][] left = new int[rows][rank];
+        int[][] right = new int[rank][cols];
+        for (int[] row : left) {
+            for (int k = 0; k < rank; k++) {
+                row[k] = random.nextInt(2 * bound + 1) - bound;
+            }
+        }
+        for (int[] row : right) {
+            for (int c = 0; c < cols; c++) {
+                row[c] = random.nextInt(2 * bound + 1) - bound;
+            }
+        }
+        int[][] output = new int[rows][cols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                long sum = 0;
+                for (int k = 0; k < rank; k++) {
+                    sum += (long) left[r][k] * right[k][c];
+                }
+                output[r][c] = (int) sum;
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Checks the exact RREF against the matrix it was computed from
+     */
+    private static void checkRREF(int[][] mat, ExactRowReducer reducer) {
+        int rows = mat.length;
+        int cols = mat[0].length;
+        int rank = reducer.getRank();
+        int[] pivots = reducer.getPivotColumns();
+
+        for (int r = 1; r <= rows; r++) {
+            for (int c = 1; c <= cols; c++) {
+                BigInteger denominator = reducer.getDenominator(r, c);
+                assertEquals(1, denominator.signum(), "Denominators must be positive");
+                assertEquals(BigInteger.ONE, reducer.getNumerator(r, c).gcd(denominator),
+                        "Entries must be in lowest terms");
+            }
+        }
+
+        for (int i = 0; i < rank; i++) {
+            if (i > 0) {
+                assertTrue(pivots[i] > pivots[i - 1], "Pivot columns must increase");
+            }
+            for (int r = 1; r <= rows; r++) {
+                BigInteger expected = r == i + 1 ? BigInteger.ONE : BigInteger.ZERO;
+                assertEquals(expected, reducer.getNumerator(r, pivots[i]), "Pivot columns must hold the identity");
+            }
+            for (int c = 1; c < pivots[i]; c++) {
+                assertEquals(BigInteger.ZERO, reducer.getNumerator(i + 1, c), "Nothing may precede a leading 1");
+            }
+        }
+
+        // Row r of the input is the sum over i of mat[r][pivot i] * (row i of the
+        // RREF), which is added up over a common denominator
+        for (int r = 0; r < rows; r++) {
+            for (int c = 1; c <= cols; c++) {
+                BigInteger numerator = BigInteger.ZERO;
+                BigInteger denominator = BigInteger.ONE;
+                for (int i = 0; i < rank; i++) {
+                    BigInteger coefficient = BigInteger.valueOf(mat[r][pivots[i] - 1]);
+                    BigInteger n = reducer.getNumerator(i + 1, c).multiply(coefficient);
+                    BigInteger d = reducer.getDenominator(i + 1, c);
+                    numerator = numerator.multiply(d).add(n.multiply(denominator));
+                    denominator = denominator.multiply(d);
+                }
+                assertEquals(BigInteger.valueOf(mat[r][c - 1]).multiply(denominator), numerator,
+                        "Row " + (r + 1) + " is not a combination of the RREF rows in column " + c);
+            }
+        }
+    }
+
+}
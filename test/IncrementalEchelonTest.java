@@ -0,0 +1,170 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@code IncrementalEchelon} on random matrices whose rank is known by
+ * construction. Each is the product of a rows x k and a k x cols matrix that
+ * both contain a k x k identity block, so the rank is exactly k however the
+ * other entries are chosen. The rows are streamed in a random order so the
+ * identity rows do not always come first.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class IncrementalEchelonTest {
+
+    private final static int TRIALS = 500;
+
+    private final Random random = new Random(6);
+
+    @Test
+    public void gaussianLowRank() {
+        for (int trial = 0; trial < TRIALS; trial++) {
+            int rows = 2 + this.random.nextInt(30);
+            int cols = 2 + this.random.nextInt(30);
+            int k = 1 + this.random.nextInt(Math.min(rows, cols));
+            double[][] mat = this.lowRank(rows, cols, k, false);
+            assertEquals(k, reduce(mat).getRank(), rows + "x" + cols + " of rank " + k);
+        }
+    }
+
+    @Test
+    public void integerLowRank() {
+        for (int trial = 0; trial < TRIALS; trial++) {
+            int rows = 2 + this.random.nextInt(30);
+            int cols = 2 + this.random.nextInt(30);
+            int k = 1 + this.random.nextInt(Math.min(rows, cols));
+            double[][] mat = this.lowRank(rows, cols, k, true);
+            assertEquals(k, reduce(mat).getRank(), rows + "x" + cols + " of rank " + k);
+        }
+    }
+
+    @Test
+    public void rankIgnoresRowScale() {
+        for (int trial = 0; trial < TRIALS / 10; trial++) {
+            double[][] mat = this.lowRank(40, 45, 30, false);
+            for (double[] row : mat) {
+                double scale = Math.pow(10, this.random.nextInt(25) - 12);
+                for (int c = 0; c < row.length; c++) {
+                    row[c] *= scale;
+                }
+            }
+            assertEquals(30, reduce(mat).getRank());
+        }
+    }
+
+    @Test
+    public void fullRank() {
+        for (int trial = 0; trial < TRIALS / 10; trial++) {
+            int n = 1 + this.random.nextInt(100);
+            double[][] mat = new double[n][n];
+            for (double[] row : mat) {
+                for (int c = 0; c < n; c++) {
+                    row[c] = this.random.nextGaussian();
+                }
+            }
+            assertEquals(n, reduce(mat).getRank(), n + "x" + n);
+        }
+    }
+
+    @Test
+    public void rrefMatchesExact() {
+        for (int trial = 0; trial < TRIALS / 10; trial++) {
+            int rows = 2 + this.random.nextInt(10);
+            int cols = 2 + this.random.nextInt(10);
+            int k = 1 + this.random.nextInt(Math.min(rows, cols));
+            double[][] mat = this.lowRank(rows, cols, k, true);
+            int[][] exact = new int[rows][cols];
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    exact[r][c] = (int) mat[r][c];
+                }
+            }
+
+            IncrementalEchelon echelon = reduce(mat);
+            ExactRowReducer reducer = new ExactRowReducer(exact);
+            assertArrayEquals(reducer.getPivotColumns(), echelon.getPivotColumns());
+            Matrix rref = echelon.getRREF();
+            for (int r = 1; r <= k; r++) {
+                for (int c = 1; c <= cols; c++) {
+                    double expected = reducer.getNumerator(r, c).doubleValue()
+                            / reducer.getDenominator(r, c).doubleValue();
+                    assertEquals(expected, rref.getElement(r, c), 1e-9 * Math.max(1, Math.abs(expected)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void augmentedConsistency() {
+        double[][] mat = this.lowRank(12, 8, 5, false);
+        IncrementalEchelon echelon = new IncrementalEchelon(8, true);
+        for (double[] row : mat) {
+            echelon.addRow(row);
+        }
+        // Every column is a combination of the first five, so the last one is a
+        // right hand side that can be reached
+        assertTrue(echelon.isConsistent());
+        assertEquals(5, echelon.getRank());
+
+        double[] contradiction = mat[0].clone();
+        contradiction[7] += 1;
+        assertTrue(echelon.addRow(contradiction));
+        assertFalse(echelon.isConsistent());
+        assertEquals(8, echelon.getPivotColumns()[5]);
+    }
+
+    private static IncrementalEchelon reduce(double[][] mat) {
+        IncrementalEchelon echelon = new IncrementalEchelon(mat[0].length);
+        for (double[] row : mat) {
+            echelon.addRow(row);
+        }
+        return echelon;
+    }
+
+    /**
+     * Creates a matrix of the given rank with its rows in a random order
+     * @param integer whether the entries are small integers rather than
+     *                standard normal values
+     */
+    private double[][] lowRank(int rows, int cols, int k, boolean integer) {
+        double[][] left = new double[rows][k];
+        double[][] right = new double[k][cols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < k; c++) {
+                left[r][c] = r < k ? (r == c ? 1 : 0) : this.entry(integer);
+            }
+        }
+        for (int r = 0; r < k; r++) {
+            for (int c = 0; c < cols; c++) {
+                right[r][c] = c < k ? (r == c ? 1 : 0) : this.entry(integer);
+            }
+        }
+
+        double[][] product = new double[rows][cols];
+        for (int r = 0; r < rows; r++) {
+            for (int i = 0; i < k; i++) {
+                for (int c = 0; c < cols; c++) {
+                    product[r][c] += left[r][i] * right[i][c];
+                }
+            }
+        }
+        for (int r = rows - 1; r > 0; r--) {
+            int other = this.random.nextInt(r + 1);
+            double[] temp = product[r];
+            product[r] = product[other];
+            product[other] = temp;
+        }
+        return product;
+    }
+
+    private double entry(boolean integer) {
+        return integer ? this.random.nextInt(7) - 3 : this.random.nextGaussian();
+    }
+
+}
@@ -0,0 +1,141 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests how {@code MatrixBatchRunner} reads job files, the results and summary
+ * it writes and the exit status it reports. The batches run on real files in a
+ * temporary directory that is deleted afterwards.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class MatrixBatchRunnerTest {
+
+    @Test
+    public void readsMatricesAndSkipsComments() throws IOException {
+        BufferedReader reader = new BufferedReader(new StringReader(
+                "# two jobs\n\n2 2\n1 2\n\n3 4\n1 3\n# still the second job\n5 -6 7.5\n"));
+        Matrix square = MatrixBatchRunner.readMatrix(reader);
+        assertTrue(square instanceof SquareMatrix);
+        assertEquals(new Matrix(new double[][] { { 1, 2 }, { 3, 4 } }), square);
+
+        Matrix row = MatrixBatchRunner.readMatrix(reader);
+        assertEquals(1, row.getRows());
+        assertEquals(new Matrix(new double[][] { { 5, -6, 7.5 } }), row);
+        assertNull(MatrixBatchRunner.readMatrix(reader));
+    }
+
+    @Test
+    public void rejectsMalformedMatrices() {
+        String[] malformed = { "2\n1 2\n", "0 3\n", "2 2\n1 2\n", "2 2\n1 2\n3\n", "1 2\n1 x\n" };
+        for (String text : malformed) {
+            BufferedReader reader = new BufferedReader(new StringReader(text));
+            assertThrows(MatrixException.class, () -> MatrixBatchRunner.readMatrix(reader), text);
+        }
+    }
+
+    @Test
+    public void successfulBatchExitsWithZero() throws IOException {
+        Path directory = Files.createTempDirectory("batch");
+        try {
+            // A 15 x 15 determinant is out of reach for cofactor expansion
+            StringBuilder job = new StringBuilder("2 2\n2 0\n0 3\n15 15\n");
+            for (int r = 0; r < 15; r++) {
+                for (int c = 0; c < 15; c++) {
+                    job.append(r == c ? 2 : 0).append(c < 14 ? " " : "\n");
+                }
+            }
+            Path jobFile = Files.writeString(directory.resolve("jobs.txt"), job);
+            Path out = directory.resolve("out");
+
+            int status = MatrixBatchRunner.run(new String[] { jobFile.toString(), "--out", out.toString(), "--ops",
+                    "determinant,inverse", "--threads", "2" });
+            assertEquals(0, status);
+            String results = Files.readString(out.resolve("jobs.txt.out"));
+            assertTrue(results.contains("DETERMINANT:\n6.0\n"), results);
+            assertTrue(results.contains("DETERMINANT:\n32768.0\n"), results);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void failedJobExitsWithOne() throws IOException {
+        Path directory = Files.createTempDirectory("batch");
+        try {
+            Path jobFile = Files.writeString(directory.resolve("jobs.txt"), "2 2\n1 0\n0 1\n2 2\n1 2\n");
+            String out = directory.resolve("out").toString();
+            assertEquals(1, MatrixBatchRunner.run(new String[] { jobFile.toString(), "--out", out }));
+
+            // Usage errors are reported with 2
+            assertEquals(2, MatrixBatchRunner.run(new String[] { jobFile.toString(), "--ops", "TRACE" }));
+            assertEquals(2, MatrixBatchRunner.run(new String[0]));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void onlyBatchDeterminantsUseLU() throws IOException {
+        // Cofactor expansion of this singular matrix gives exactly 0, while the
+        // LU pivots leave rounding noise, which the interactive menu must not show
+        String singular = "3 3\n1 2 3\n4 5 6\n7 8 9\n";
+        Matrix mat = MatrixBatchRunner.readMatrix(new BufferedReader(new StringReader(singular)));
+        assertEquals("0.0", MatrixRunner.computeOperation("DETERMINANT", mat));
+
+        Path directory = Files.createTempDirectory("batch");
+        try {
+            Path jobFile = Files.writeString(directory.resolve("jobs.txt"), singular);
+            Path out = directory.resolve("out");
+            assertEquals(0, MatrixBatchRunner.run(new String[] { jobFile.toString(), "--out", out.toString(), "--ops",
+                    "DETERMINANT" }));
+            String results = Files.readString(out.resolve("jobs.txt.out"));
+            double determinant = Double.parseDouble(results.split("\n")[2]);
+            assertEquals(0, determinant, 1e-12, results);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void malformedMatrixIsNotCountedAsJob() throws IOException {
+        Path directory = Files.createTempDirectory("batch");
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        try {
+            // One good job, then a matrix that ends the reading of the file
+            Path jobFile = Files.writeString(directory.resolve("jobs.txt"), "1 1\n5\n2 2\n1 x\n3 4\n");
+            String out = directory.resolve("out").toString();
+            System.setOut(new PrintStream(summary, true));
+            assertEquals(1, MatrixBatchRunner.run(new String[] { jobFile.toString(), "--out", out }));
+        } finally {
+            System.setOut(stdout);
+            delete(directory);
+        }
+        String text = summary.toString();
+        assertTrue(text.contains("Jobs: 1 (0 failed)\n"), text);
+        assertTrue(text.contains("File errors: 1 "), text);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+}
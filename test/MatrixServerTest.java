@@ -0,0 +1,126 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@code MatrixServer} over the loopback address. Each test starts its
+ * own server on a free port and stops it when done.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class MatrixServerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    public void computesInverseAndDeterminant() throws Exception {
+        MatrixServer server = start();
+        try {
+            HttpResponse<String> inverse = this.post(server, "/inverse", "2 2\n2 0\n0 4\n");
+            assertEquals(200, inverse.statusCode());
+            assertEquals("2 2\n0.5 0.0\n0.0 0.25\n", inverse.body());
+
+            HttpResponse<String> determinant = this.post(server, "/determinant", "3 3\n1 2 3\n0 4 5\n0 0 6\n");
+            assertEquals(200, determinant.statusCode());
+            assertEquals(24, Double.parseDouble(determinant.body().trim()), 1e-12);
+
+            HttpResponse<String> stats = this.client.send(
+                    HttpRequest.newBuilder(uri(server, "/stats")).GET().build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, stats.statusCode());
+            assertTrue(stats.body().startsWith("served 2\n"), stats.body());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void singularIsUnprocessable() throws Exception {
+        MatrixServer server = start();
+        try {
+            HttpResponse<String> response = this.post(server, "/inverse", "2 2\n1 2\n2 4\n");
+            assertEquals(422, response.statusCode());
+            assertTrue(response.body().contains("not invertible"), response.body());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void malformedIsBadRequest() throws Exception {
+        MatrixServer server = start();
+        try {
+            assertEquals(400, this.post(server, "/inverse", "2 3\n1 2 3\n4 5 6\n").statusCode());
+            assertEquals(400, this.post(server, "/inverse", "2 2\n1 2\n3\n").statusCode());
+            assertEquals(400, this.post(server, "/determinant", "2 2\n1 x\n3 4\n").statusCode());
+            assertEquals(400, this.post(server, "/determinant", "").statusCode());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void failuresAreTimedApart() throws Exception {
+        MatrixServer server = start();
+        try {
+            assertEquals(200, this.post(server, "/determinant", "1 1\n3\n").statusCode());
+            String stats = this.awaitStats(server, "p50_ms ");
+            assertFalse(stats.contains("error_p50_ms "), stats);
+
+            // Requests that are not answered with 200 count towards the latency
+            // of every request and towards that of failures
+            assertEquals(422, this.post(server, "/inverse", "2 2\n1 2\n2 4\n").statusCode());
+            assertEquals(400, this.post(server, "/inverse", "2 2\n1 x\n3 4\n").statusCode());
+            assertEquals(405, this.client.send(HttpRequest.newBuilder(uri(server, "/inverse")).GET().build(),
+                    HttpResponse.BodyHandlers.ofString()).statusCode());
+            stats = this.awaitStats(server, "error_p50_ms ");
+            assertTrue(stats.startsWith("served 1\n"), stats);
+            assertTrue(stats.contains("error_p99_ms "), stats);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static MatrixServer start() throws IOException {
+        MatrixServer server = new MatrixServer(0, 16, 4, 2);
+        server.start();
+        return server;
+    }
+
+    private HttpResponse<String> post(MatrixServer server, String path, String body)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri(server, path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return this.client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Gets the stats once they contain the given text. A latency is recorded once
+     * its response has been sent, so it may arrive just after the client has it.
+     */
+    private String awaitStats(MatrixServer server, String text) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri(server, "/stats")).GET().build();
+        String stats = "";
+        for (int attempt = 0; attempt < 100 && !stats.contains(text); attempt++) {
+            if (attempt > 0) {
+                Thread.sleep(20);
+            }
+            stats = this.client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+        }
+        assertTrue(stats.contains(text), stats);
+        return stats;
+    }
+
+    private static URI uri(MatrixServer server, String path) {
+        return URI.create("http://localhost:" + server.getPort() + path);
+    }
+
+}
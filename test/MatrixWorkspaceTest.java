@@ -0,0 +1,153 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that {@code MatrixWorkspace} hands released storage back out for the
+ * next reduction of the same shape, that reductions through a workspace give
+ * the same results as reducing a fresh copy, and that the pool keeps to its
+ * limits.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class MatrixWorkspaceTest {
+
+    private final static int[][] SHAPES = { { 1, 1 }, { 3, 3 }, { 4, 7 }, { 7, 4 }, { 12, 12 } };
+
+    private final Random random = new Random(10);
+
+    @Test
+    public void sameShapeReductionReusesStorage() {
+        MatrixWorkspace ws = new MatrixWorkspace();
+        Matrix first = Matrix.getRREF(this.randomMatrix(5, 6), ws);
+        double[][] storage = first.getMatrix();
+        ws.release(first);
+        assertEquals(1, ws.size());
+
+        // The released array still holds the first result, which must not leak in
+        Matrix input = this.randomMatrix(5, 6);
+        Matrix second = Matrix.getRREF(input, ws);
+        assertSame(storage, second.getMatrix());
+        assertEquals(0, ws.size());
+        assertEquals(reduceCopy(input, true), second);
+        ws.release(second);
+
+        Matrix echelon = Matrix.createEchelonForm(input, ws);
+        assertSame(storage, echelon.getMatrix());
+        assertEquals(reduceCopy(input, false), echelon);
+
+        // Another shape needs new storage
+        Matrix other = Matrix.getRREF(this.randomMatrix(6, 5), ws);
+        assertNotSame(storage, other.getMatrix());
+    }
+
+    @Test
+    public void resultsMatchReducingACopy() {
+        MatrixWorkspace ws = new MatrixWorkspace();
+        for (int[] shape : SHAPES) {
+            for (int trial = 0; trial < 3; trial++) {
+                Matrix input = this.randomMatrix(shape[0], shape[1]);
+                Matrix before = input.clone();
+
+                Matrix rref = Matrix.getRREF(input, ws);
+                assertEquals(reduceCopy(input, true), rref, shape[0] + "x" + shape[1]);
+                Matrix echelon = Matrix.createEchelonForm(input, ws);
+                assertEquals(reduceCopy(input, false), echelon, shape[0] + "x" + shape[1]);
+                assertEquals(shape[0] == shape[1], rref instanceof SquareMatrix);
+                assertEquals(before, input);
+                ws.release(rref);
+                ws.release(echelon);
+            }
+        }
+    }
+
+    @Test
+    public void structuredInputIsCopiedDensely() {
+        MatrixWorkspace ws = new MatrixWorkspace();
+        // Leave a dense result with nonzero entries everywhere in the pool
+        double[][] full = new double[6][6];
+        for (double[] row : full) {
+            Arrays.fill(row, 9);
+        }
+        ws.release(full);
+
+        TridiagonalMatrix mat = new TridiagonalMatrix(6);
+        for (int r = 1; r <= 6; r++) {
+            for (int c = Math.max(1, r - 1); c <= Math.min(6, r + 1); c++) {
+                mat.setElement(r, c, 1 + this.random.nextInt(5));
+            }
+        }
+        Matrix rref = Matrix.getRREF(mat, ws);
+        assertSame(full, rref.getMatrix());
+        assertEquals(reduceCopy(mat.toSquareMatrix(), true), rref);
+
+        // A structured matrix has no array of its own to keep
+        ws.release(rref);
+        ws.release(mat);
+        assertEquals(1, ws.size());
+    }
+
+    @Test
+    public void poolKeepsToItsLimits() {
+        MatrixWorkspace ws = new MatrixWorkspace(2, 100);
+        ws.release(new double[10][10]);
+        assertEquals(1, ws.size());
+
+        // Over the number of entries, even though there is room for another array
+        ws.release(new double[1][1]);
+        assertEquals(1, ws.size());
+
+        ws.borrow(10, 10);
+        assertEquals(0, ws.size());
+        ws.release(new double[5][5]);
+        ws.release(new double[5][5]);
+        assertEquals(2, ws.size());
+
+        // Over the number of arrays
+        ws.release(new double[1][1]);
+        assertEquals(2, ws.size());
+
+        // An array with no rows is never kept
+        MatrixWorkspace empty = new MatrixWorkspace();
+        empty.release(new double[0][]);
+        assertEquals(0, empty.size());
+    }
+
+    /**
+     * Reduces a copy of a matrix without sharing any storage
+     */
+    private static Matrix reduceCopy(Matrix input, boolean rref) {
+        Matrix output = input.clone();
+        MatrixWorkspace ws = new MatrixWorkspace(0);
+        if (rref) {
+            output.reduceToRREF(ws);
+        } else {
+            output.reduceToEchelon(ws);
+        }
+        return output;
+    }
+
+    /**
+     * Creates a matrix of small integers. About one row in four is a copy of an
+     * earlier one, so the reductions also produce rows of zeros.
+     */
+    private Matrix randomMatrix(int rows, int cols) {
+        double[][] arr = new double[rows][cols];
+        for (int r = 0; r < rows; r++) {
+            if (r > 0 && this.random.nextInt(4) == 0) {
+                arr[r] = arr[this.random.nextInt(r)].clone();
+                continue;
+            }
+            for (int c = 0; c < cols; c++) {
+                arr[r][c] = this.random.nextInt(9) - 4;
+            }
+        }
+        return rows == cols ? new SquareMatrix(arr) : new Matrix(arr);
+    }
+
+}
@@ -0,0 +1,94 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@code MixedPrecisionSolver} against the double precision solution from
+ * {@code LUDecomposition}. After refinement the two must agree to about double
+ * precision, not single, and a matrix that is singular must be rejected rather
+ * than given an inaccurate solution.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class MixedPrecisionSolverTest {
+
+    private final static int TRIALS = 50;
+
+    /**
+     * The largest relative difference allowed from the double precision solution,
+     * far below the 1e-7 that single precision alone would give
+     */
+    private final static double TOLERANCE = 1e-10;
+
+    private final Random random = new Random(5);
+
+    @Test
+    public void matchesDoublePrecision() {
+        for (int trial = 0; trial < TRIALS; trial++) {
+            int n = 1 + this.random.nextInt(60);
+            SquareMatrix mat = this.randomMatrix(n);
+            double[] b = new double[n];
+            for (int i = 0; i < n; i++) {
+                b[i] = this.random.nextGaussian();
+            }
+
+            double[] expected = new LUDecomposition(mat).solve(b);
+            MixedPrecisionSolver solver = new MixedPrecisionSolver(mat);
+            double[] actual = solver.solve(b);
+
+            double scale = 0;
+            for (double entry : expected) {
+                scale = Math.max(scale, Math.abs(entry));
+            }
+            for (int i = 0; i < n; i++) {
+                assertEquals(expected[i], actual[i], TOLERANCE * scale, n + "x" + n + ", entry " + (i + 1));
+            }
+            assertTrue(solver.getLastIterations() <= MixedPrecisionSolver.DEFAULT_MAX_ITERATIONS);
+        }
+    }
+
+    @Test
+    public void singularIsRejectedWhenFactored() {
+        // Rounding to float leaves a tiny last pivot rather than an exact zero
+        SquareMatrix decimals = new SquareMatrix(
+                new double[][] { { 0.1, 0.2, 0.3 }, { 0.4, 0.5, 0.6 }, { 0.7, 0.8, 0.9 } });
+        assertThrows(MatrixException.class, () -> new MixedPrecisionSolver(decimals));
+        assertThrows(MatrixException.class, () -> new MixedPrecisionSolver(new SquareMatrix(4)));
+    }
+
+    @Test
+    public void singularIsRejected() {
+        // The last row is the sum of the first two. Most such matrices are caught
+        // by the pivot tolerance, and the rest when refinement stops converging
+        for (int trial = 0; trial < TRIALS; trial++) {
+            int n = 3 + this.random.nextInt(30);
+            double[][] arr = this.randomMatrix(n).getMatrix();
+            for (int c = 0; c < n; c++) {
+                arr[n - 1][c] = arr[0][c] + arr[1][c];
+            }
+            SquareMatrix mat = new SquareMatrix(arr);
+            double[] b = new double[n];
+            b[n - 1] = 1;
+            assertThrows(MatrixException.class, () -> new MixedPrecisionSolver(mat).solve(b), n + "x" + n);
+        }
+    }
+
+    /**
+     * Creates a matrix of standard normal entries with a boosted diagonal, so it
+     * is well conditioned enough for refinement to converge
+     */
+    private SquareMatrix randomMatrix(int n) {
+        double[][] arr = new double[n][n];
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                arr[r][c] = this.random.nextGaussian() + (r == c ? 2 : 0);
+            }
+        }
+        return new SquareMatrix(arr);
+    }
+
+}
@@ -0,0 +1,118 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@code StrassenMultiplier} against the classical product from
+ * {@code Matrix.multiply}. Every entry must agree to within the error bound of
+ * Strassen's algorithm plus that of the classical one, whatever the size,
+ * crossover and number of parallel levels.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class StrassenMultiplierTest {
+
+    private final static int[] SIZES = { 1, 2, 7, 65, 129 };
+
+    private final static int[] PARALLEL_DEPTHS = { 0, 1, 2 };
+
+    private final Random random = new Random(12);
+
+    @Test
+    public void matchesClassicalProduct() {
+        for (int n : SIZES) {
+            // Crossovers well below, just below, at and above n
+            int[] crossovers = { 1, Math.max(1, n / 4), Math.max(1, n - 1), n, n + 1 };
+            for (int crossover : crossovers) {
+                for (int depth : PARALLEL_DEPTHS) {
+                    StrassenMultiplier multiplier = new StrassenMultiplier(crossover, depth,
+                            ForkJoinPool.commonPool());
+                    SquareMatrix one = this.randomMatrix(n);
+                    SquareMatrix two = this.randomMatrix(n);
+                    checkProduct(multiplier, one, two,
+                            n + "x" + n + ", crossover " + crossover + ", depth " + depth);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void reusedWorkspaceGivesSameResults() {
+        // The workspace is kept between products, so stale entries must not leak
+        // into the next one, whether it has the same size or not
+        StrassenMultiplier multiplier = new StrassenMultiplier(16);
+        int[] sizes = { 65, 65, 40, 129, 65 };
+        for (int n : sizes) {
+            checkProduct(multiplier, this.randomMatrix(n), this.randomMatrix(n), n + "x" + n);
+        }
+    }
+
+    @Test
+    public void usableAfterRelease() {
+        StrassenMultiplier multiplier = new StrassenMultiplier(8);
+        SquareMatrix one = this.randomMatrix(65);
+        SquareMatrix two = this.randomMatrix(65);
+        SquareMatrix before = multiplier.multiply(one, two);
+
+        multiplier.release();
+        assertEquals(before, multiplier.multiply(one, two));
+        checkProduct(multiplier, one, two, "after release");
+
+        // Releasing twice, or before any product, is harmless
+        multiplier.release();
+        multiplier.release();
+        new StrassenMultiplier(8).release();
+        checkProduct(multiplier, this.randomMatrix(33), this.randomMatrix(33), "another size after release");
+    }
+
+    @Test
+    public void errorBoundIsNoSmallerThanClassical() {
+        StrassenMultiplier multiplier = new StrassenMultiplier(16);
+        for (int n : SIZES) {
+            SquareMatrix one = this.randomMatrix(n);
+            SquareMatrix two = this.randomMatrix(n);
+            double bound = multiplier.getErrorBound(one, two);
+            double classical = StrassenMultiplier.getClassicalErrorBound(one, two);
+            if (n <= multiplier.getCrossover()) {
+                assertEquals(classical, bound);
+            } else {
+                assertTrue(bound >= classical, n + "x" + n + ": " + bound + " < " + classical);
+            }
+        }
+    }
+
+    /**
+     * Checks a product against the classical one. Both are rounded, so the
+     * difference may be as large as the sum of their error bounds.
+     */
+    private static void checkProduct(StrassenMultiplier multiplier, SquareMatrix one, SquareMatrix two,
+            String message) {
+        int n = one.getN();
+        SquareMatrix expected = (SquareMatrix) Matrix.multiply(one, two);
+        SquareMatrix actual = multiplier.multiply(one, two);
+        assertEquals(n, actual.getN(), message);
+
+        double tolerance = multiplier.getErrorBound(one, two) + StrassenMultiplier.getClassicalErrorBound(one, two);
+        for (int r = 1; r <= n; r++) {
+            for (int c = 1; c <= n; c++) {
+                assertEquals(expected.getElement(r, c), actual.getElement(r, c), tolerance,
+                        message + ", entry (" + r + ", " + c + ")");
+            }
+        }
+    }
+
+    private SquareMatrix randomMatrix(int n) {
+        double[][] arr = new double[n][n];
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                arr[r][c] = this.random.nextGaussian();
+            }
+        }
+        return new SquareMatrix(arr);
+    }
+
+}
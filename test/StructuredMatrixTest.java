@@ -0,0 +1,239 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the structured matrices against {@code LUDecomposition} on dense copies
+ * of the same random matrices. Solutions, determinants and inverses must agree
+ * to within rounding, and a matrix must be singular for the structured solvers
+ * exactly when it is for the dense factorization.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class StructuredMatrixTest {
+
+    private final static int[] SIZES = { 1, 2, 7, 30 };
+
+    /**
+     * The largest relative difference allowed between a structured and a dense
+     * result. The random matrices are kept well conditioned, so both are
+     * accurate to within a few hundred units of roundoff.
+     */
+    private final static double TOLERANCE = 1e-12;
+
+    private final Random random = new Random(4);
+
+    @Test
+    public void bandedMatchesDense() {
+        for (int n : SIZES) {
+            BandedMatrix mat = new BandedMatrix(n, 2, 3);
+            this.fill(mat, 0);
+            checkAgainstDense(mat);
+        }
+    }
+
+    @Test
+    public void tridiagonalMatchesDense() {
+        for (int n : SIZES) {
+            // Diagonally dominant, so solved with the Thomas algorithm
+            TridiagonalMatrix dominant = new TridiagonalMatrix(n);
+            this.fill(dominant, 5);
+            checkAgainstDense(dominant);
+
+            // Not dominant, so solved with the pivoting banded factorization
+            TridiagonalMatrix general = new TridiagonalMatrix(n);
+            this.fill(general, 0);
+            checkAgainstDense(general);
+        }
+    }
+
+    @Test
+    public void diagonalMatchesDense() {
+        for (int n : SIZES) {
+            DiagonalMatrix mat = new DiagonalMatrix(n);
+            this.fill(mat, 0);
+            checkAgainstDense(mat);
+        }
+    }
+
+    @Test
+    public void triangularMatchesDense() {
+        for (int n : SIZES) {
+            // Random triangular matrices are badly conditioned unless the
+            // diagonal is large
+            TriangularMatrix upper = new TriangularMatrix(n, true);
+            this.fill(upper, 2 * n);
+            checkAgainstDense(upper);
+
+            TriangularMatrix lower = new TriangularMatrix(n, false);
+            this.fill(lower, 2 * n);
+            checkAgainstDense(lower);
+        }
+    }
+
+    @Test
+    public void constructorsMatchSetElement() {
+        for (int n : SIZES) {
+            double[] lower = this.randomVector(n - 1);
+            double[] diagonal = this.randomVector(n);
+            double[] upper = this.randomVector(n - 1);
+            TridiagonalMatrix tridiagonal = new TridiagonalMatrix(lower, diagonal, upper);
+            TridiagonalMatrix expected = new TridiagonalMatrix(n);
+            for (int i = 1; i <= n; i++) {
+                expected.setElement(i, i, diagonal[i - 1]);
+                if (i > 1) {
+                    expected.setElement(i, i - 1, lower[i - 2]);
+                    expected.setElement(i - 1, i, upper[i - 2]);
+                }
+            }
+            assertEquals(expected.toSquareMatrix(), tridiagonal.toSquareMatrix(), n + "x" + n);
+
+            DiagonalMatrix diagonalMatrix = new DiagonalMatrix(diagonal);
+            for (int i = 1; i <= n; i++) {
+                assertEquals(diagonal[i - 1], diagonalMatrix.getElement(i, i));
+            }
+        }
+
+        double[] lower = { 1, 2 };
+        double[] diagonal = { 3, 4, 5 };
+        double[] upper = { 6, 7 };
+        TridiagonalMatrix tridiagonal = new TridiagonalMatrix(lower, diagonal, upper);
+        SquareMatrix dense = tridiagonal.toSquareMatrix();
+        assertEquals(dense, new BandedMatrix(dense, 1, 1).toSquareMatrix());
+        assertThrows(MatrixException.class, () -> new BandedMatrix(dense, 0, 1));
+        assertThrows(MatrixException.class, () -> new TriangularMatrix(dense, true));
+        SquareMatrix upperPart = new TridiagonalMatrix(new double[2], diagonal, upper).toSquareMatrix();
+        assertEquals(upperPart, new TriangularMatrix(upperPart, true).toSquareMatrix());
+    }
+
+    @Test
+    public void negligiblePivotsAreSingular() {
+        // Each has a pivot that is not zero but is below the tolerance that
+        // LUDecomposition uses
+        StructuredMatrix[] mats = { new DiagonalMatrix(new double[] { 1, 1e-300 }),
+                new TridiagonalMatrix(new double[] { 1 }, new double[] { 1e20, 1e-20 }, new double[] { 1 }),
+                new TriangularMatrix(new DiagonalMatrix(new double[] { 1e-20, 1e20 }).toSquareMatrix(), false),
+                new BandedMatrix(new DiagonalMatrix(new double[] { 1e20, 1, 1e-10 }).toSquareMatrix(), 1, 1) };
+        for (StructuredMatrix mat : mats) {
+            assertTrue(new LUDecomposition(mat.toSquareMatrix()).isSingular(), "Dense copy should be singular");
+            assertThrows(MatrixException.class, () -> mat.solve(new double[mat.getN()]),
+                    mat.getClass().getSimpleName() + " should be singular");
+        }
+    }
+
+    @Test
+    public void productsKeepStructure() {
+        for (int n : SIZES) {
+            StructuredMatrix[] mats = { new DiagonalMatrix(n), new TridiagonalMatrix(n), new BandedMatrix(n, 2, 1),
+                    new TriangularMatrix(n, true), new TriangularMatrix(n, false) };
+            for (StructuredMatrix mat : mats) {
+                this.fill(mat, 0);
+            }
+            for (StructuredMatrix one : mats) {
+                for (StructuredMatrix two : mats) {
+                    String message = n + "x" + n + " " + one.getClass().getSimpleName() + " times "
+                            + two.getClass().getSimpleName();
+                    Matrix product = Matrix.multiply(one, two);
+                    assertEquals(Matrix.multiply(one.toSquareMatrix(), two.toSquareMatrix()), product, message);
+
+                    int lower = Math.min(n - 1, one.getLowerBandwidth() + two.getLowerBandwidth());
+                    int upper = Math.min(n - 1, one.getUpperBandwidth() + two.getUpperBandwidth());
+                    if (n > 1 && lower == n - 1 && upper == n - 1) {
+                        assertFalse(product instanceof StructuredMatrix, message);
+                    } else {
+                        assertTrue(product instanceof StructuredMatrix, message);
+                        assertEquals(lower, ((StructuredMatrix) product).getLowerBandwidth(), message);
+                        assertEquals(upper, ((StructuredMatrix) product).getUpperBandwidth(), message);
+                    }
+                }
+
+                // A dense factor on either side gives a dense product
+                SquareMatrix dense = this.randomMatrix(n);
+                assertEquals(Matrix.multiply(one.toSquareMatrix(), dense), Matrix.multiply(one, dense));
+                assertEquals(Matrix.multiply(dense, one.toSquareMatrix()), Matrix.multiply(dense, one));
+            }
+        }
+
+        DiagonalMatrix diagonal = new DiagonalMatrix(new double[] { 1, 2, 3, 4 });
+        TriangularMatrix upper = new TriangularMatrix(4, true);
+        this.fill(upper, 0);
+        assertTrue(Matrix.multiply(diagonal, upper) instanceof TriangularMatrix);
+        assertTrue(((TriangularMatrix) Matrix.multiply(upper, diagonal)).isUpper());
+        assertTrue(Matrix.multiply(new TridiagonalMatrix(4), upper) instanceof BandedMatrix);
+    }
+
+    /**
+     * Fills every entry inside the structure with a standard normal value
+     * @param mat   the matrix to fill
+     * @param boost added to each diagonal entry
+     */
+    private void fill(StructuredMatrix mat, double boost) {
+        for (int r = 1; r <= mat.getN(); r++) {
+            for (int c = mat.getFirstColumn(r); c <= mat.getLastColumn(r); c++) {
+                mat.setElement(r, c, this.random.nextGaussian() + (r == c ? boost : 0));
+            }
+        }
+    }
+
+    private double[] randomVector(int length) {
+        double[] output = new double[length];
+        for (int i = 0; i < length; i++) {
+            output[i] = this.random.nextGaussian();
+        }
+        return output;
+    }
+
+    private SquareMatrix randomMatrix(int n) {
+        double[][] arr = new double[n][];
+        for (int r = 0; r < n; r++) {
+            arr[r] = this.randomVector(n);
+        }
+        return new SquareMatrix(arr);
+    }
+
+    /**
+     * Compares the solution, determinant and inverse of a structured matrix with
+     * those of a dense copy
+     */
+    private void checkAgainstDense(StructuredMatrix mat) {
+        int n = mat.getN();
+        LUDecomposition lu = new LUDecomposition(mat.toSquareMatrix());
+        String name = mat.getClass().getSimpleName() + " " + n + "x" + n;
+
+        double[] b = new double[n];
+        for (int i = 0; i < n; i++) {
+            b[i] = this.random.nextGaussian();
+        }
+        assertClose(lu.solve(b), mat.solve(b), name + " solve");
+
+        double det = lu.getDeterminant();
+        assertEquals(det, mat.getDeterminant(), TOLERANCE * Math.abs(det), name + " determinant");
+        assertEquals(det, SquareMatrix.getDeterminant(mat), TOLERANCE * Math.abs(det), name + " dispatched determinant");
+
+        SquareMatrix expected = lu.getInverse();
+        SquareMatrix inverse = SquareMatrix.getInverse(mat);
+        for (int r = 1; r <= n; r++) {
+            assertClose(expected.getRow(r), inverse.getRow(r), name + " inverse row " + r);
+        }
+    }
+
+    /**
+     * Checks that two vectors agree to within the tolerance, relative to the
+     * largest entry of the expected vector
+     */
+    private static void assertClose(double[] expected, double[] actual, String message) {
+        double scale = 0;
+        for (double entry : expected) {
+            scale = Math.max(scale, Math.abs(entry));
+        }
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], TOLERANCE * scale, message + ", entry " + (i + 1));
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@code UpdatableInverse} by applying random updates of every kind and
+ * comparing the updated inverse with one computed from scratch by
+ * {@code LUDecomposition}. Updates that would make the matrix singular must
+ * leave both the matrix and its inverse as they were.
+ * @author Jack Smalligan
+ * @version 1.0
+ */
+public class UpdatableInverseTest {
+
+    private final static int TRIALS = 20;
+
+    /**
+     * The largest difference allowed from a fresh inverse, relative to its
+     * largest entry. The drift check keeps the updated inverse this accurate.
+     */
+    private final static double TOLERANCE = 1e-8;
+
+    private final Random random = new Random(8);
+
+    @Test
+    public void updatesMatchFreshInverse() {
+        for (int trial = 0; trial < TRIALS; trial++) {
+            int n = 2 + this.random.nextInt(15);
+            UpdatableInverse inverse = new UpdatableInverse(this.randomMatrix(n));
+            for (int step = 0; step < 10; step++) {
+                int r = 1 + this.random.nextInt(n);
+                int c = 1 + this.random.nextInt(n);
+                switch (step % 5) {
+                case 0:
+                    inverse.setElement(r, c, this.random.nextGaussian() + (r == c ? n : 0));
+                    break;
+                case 1:
+                    double[] row = this.randomVector(n);
+                    row[r - 1] += n;
+                    inverse.replaceRow(r, row);
+                    break;
+                case 2:
+                    double[] col = this.randomVector(n);
+                    col[c - 1] += n;
+                    inverse.replaceColumn(c, col);
+                    break;
+                case 3:
+                    double[] u = this.randomVector(n);
+                    double[] v = this.randomVector(n);
+                    for (int i = 0; i < n; i++) {
+                        u[i] *= 0.1;
+                    }
+                    inverse.rankOneUpdate(u, v);
+                    break;
+                default:
+                    double[][] us = { this.randomVector(n), this.randomVector(n) };
+                    double[][] vs = { this.randomVector(n), this.randomVector(n) };
+                    for (double[] vector : us) {
+                        for (int i = 0; i < n; i++) {
+                            vector[i] *= 0.1;
+                        }
+                    }
+                    inverse.rankUpdate(us, vs);
+                }
+                checkAgainstFresh(inverse, n + "x" + n + ", step " + step);
+            }
+        }
+    }
+
+    @Test
+    public void singularUpdateIsReverted() {
+        SquareMatrix identity = SquareMatrix.getIdentity(3);
+        UpdatableInverse inverse = new UpdatableInverse(identity);
+
+        assertThrows(MatrixException.class, () -> inverse.setElement(2, 2, 0));
+        assertEquals(identity, inverse.getMatrix());
+        assertEquals(identity, inverse.getInverse());
+
+        assertThrows(MatrixException.class, () -> inverse.replaceRow(3, new double[] { 1, 0, 0 }));
+        assertEquals(identity, inverse.getMatrix());
+
+        assertThrows(MatrixException.class,
+                () -> inverse.setElements(new int[] { 1, 2 }, new int[] { 1, 2 }, new double[] { 0, 0 }));
+        assertEquals(identity, inverse.getMatrix());
+        assertEquals(identity, inverse.getInverse());
+
+        // The inverse is still usable afterwards
+        inverse.setElement(1, 3, 2);
+        checkAgainstFresh(inverse, "after reverting");
+    }
+
+    @Test
+    public void duplicateEntriesUseLastValue() {
+        SquareMatrix mat = this.randomMatrix(5);
+        UpdatableInverse inverse = new UpdatableInverse(mat);
+        inverse.setElements(new int[] { 1, 2, 1, 4 }, new int[] { 2, 3, 2, 4 }, new double[] { 5, -1, 7, 9 });
+
+        mat.setElement(1, 2, 7);
+        mat.setElement(2, 3, -1);
+        mat.setElement(4, 4, 9);
+        assertEquals(mat, inverse.getMatrix());
+        checkAgainstFresh(inverse, "duplicate entries");
+    }
+
+    @Test
+    public void refactorsAfterMaxUpdates() {
+        UpdatableInverse inverse = new UpdatableInverse(this.randomMatrix(6), UpdatableInverse.DEFAULT_DRIFT_TOLERANCE,
+                3);
+        int before = inverse.getRefactorizationCount();
+        for (int i = 1; i <= 4; i++) {
+            inverse.setElement(i, i, 10 + i);
+        }
+        assertTrue(inverse.getRefactorizationCount() > before);
+        checkAgainstFresh(inverse, "after refactoring");
+    }
+
+    private static void checkAgainstFresh(UpdatableInverse inverse, String message) {
+        SquareMatrix expected = new LUDecomposition(inverse.getMatrix()).getInverse();
+        SquareMatrix actual = inverse.getInverse();
+        int n = inverse.getN();
+        double scale = 0;
+        for (int r = 1; r <= n; r++) {
+            for (double entry : expected.getRow(r)) {
+                scale = Math.max(scale, Math.abs(entry));
+            }
+        }
+        for (int r = 1; r <= n; r++) {
+            for (int c = 1; c <= n; c++) {
+                assertEquals(expected.getElement(r, c), actual.getElement(r, c), TOLERANCE * scale,
+                        message + ", entry (" + r + ", " + c + ")");
+            }
+        }
+    }
+
+    /**
+     * Creates a matrix of standard normal entries with a boosted diagonal, so it
+     * stays well conditioned under the updates
+     */
+    private SquareMatrix randomMatrix(int n) {
+        double[][] arr = new double[n][];
+        for (int r = 0; r < n; r++) {
+            arr[r] = this.randomVector(n);
+            arr[r][r] += n;
+        }
+        return new SquareMatrix(arr);
+    }
+
+    private double[] randomVector(int n) {
+        double[] output = new double[n];
+        for (int i = 0; i < n; i++) {
+            output[i] = this.random.nextGaussian();
+        }
+        return output;
+    }
+
+}